@@ -1,14 +1,65 @@
 package edu.ccrm;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.InputMismatchException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 // Enums
 enum Semester { SPRING, SUMMER, FALL }
 
+enum SeatStatus { ENROLLED, WAITLISTED }
+
 enum Grade { 
     A(4.0), B(3.0), C(2.0), D(1.0), F(0.0);
     private final double points;
@@ -26,20 +77,43 @@ abstract class Person implements Displayable {
     protected String id;
     protected String fullName;
     protected String email;
+    protected long version;
     
     public Person(String id, String fullName, String email) {
         this.id = id;
         this.fullName = fullName;
         this.email = email;
+        this.version = RecordVersions.getInstance().stamp(this, 0);
+    }
+    
+    // Restores a stored person with its existing version
+    protected Person(String id, String fullName, String email, long version) {
+        this.id = id;
+        this.fullName = fullName;
+        this.email = email;
+        this.version = version;
     }
     
     // Getters and setters demonstrating encapsulation
     public String getId() { return id; }
     public String getFullName() { return fullName; }
     public String getEmail() { return email; }
+    public long getVersion() { return version; }
+    
+    public void setFullName(String fullName) {
+        this.fullName = fullName;
+        touch();
+    }
+    
+    public void setEmail(String email) {
+        this.email = email;
+        touch();
+    }
     
-    public void setFullName(String fullName) { this.fullName = fullName; }
-    public void setEmail(String email) { this.email = email; }
+    // Records a mutation so the change shows up in the next delta export
+    protected void touch() {
+        this.version = RecordVersions.getInstance().stamp(this, version);
+    }
 }
 
 // Student class
@@ -57,6 +131,16 @@ class Student extends Person {
         this.active = true;
     }
     
+    // Restores a stored student without stamping a new version
+    Student(String id, String regNo, String fullName, String email, LocalDate enrollmentDate,
+            boolean active, List<String> enrolledCourses, long version) {
+        super(id, fullName, email, version);
+        this.regNo = regNo;
+        this.enrollmentDate = enrollmentDate;
+        this.enrolledCourses = new ArrayList<>(enrolledCourses);
+        this.active = active;
+    }
+    
     @Override
     public void displayInfo() {
         System.out.println("Student ID: " + id);
@@ -77,6 +161,10 @@ class Student extends Person {
         }
     }
     
+    public void dropCourse(String courseCode) {
+        enrolledCourses.removeIf(code -> code.equalsIgnoreCase(courseCode));
+    }
+    
     // Getters
     public String getRegNo() { return regNo; }
     public LocalDate getEnrollmentDate() { return enrollmentDate; }
@@ -84,7 +172,10 @@ class Student extends Person {
     public boolean isActive() { return active; }
     
     // Setter
-    public void setActive(boolean active) { this.active = active; }
+    public void setActive(boolean active) {
+        this.active = active;
+        touch();
+    }
 }
 
 // Course class with Builder pattern
@@ -95,7 +186,10 @@ class Course implements Displayable {
     private String instructor;
     private Semester semester;
     private String department;
+    private int capacity;
+    private List<String> prerequisites;
     private boolean active;
+    private long version;
     
     private Course(Builder builder) {
         this.code = builder.code;
@@ -104,7 +198,10 @@ class Course implements Displayable {
         this.instructor = builder.instructor;
         this.semester = builder.semester;
         this.department = builder.department;
-        this.active = true;
+        this.capacity = builder.capacity;
+        this.prerequisites = List.copyOf(builder.prerequisites);
+        this.active = builder.active;
+        this.version = builder.version > 0 ? builder.version : RecordVersions.getInstance().stamp(this, 0);
     }
     
     // Builder pattern
@@ -115,6 +212,10 @@ class Course implements Displayable {
         private String instructor;
         private Semester semester;
         private String department;
+        private int capacity;
+        private List<String> prerequisites = new ArrayList<>();
+        private boolean active = true;
+        private long version;
         
         public Builder code(String code) { this.code = code; return this; }
         public Builder title(String title) { this.title = title; return this; }
@@ -122,6 +223,13 @@ class Course implements Displayable {
         public Builder instructor(String instructor) { this.instructor = instructor; return this; }
         public Builder semester(Semester semester) { this.semester = semester; return this; }
         public Builder department(String department) { this.department = department; return this; }
+        // 0 means the course has no seat limit
+        public Builder capacity(int capacity) { this.capacity = capacity; return this; }
+        public Builder prerequisites(String... codes) { prerequisites.addAll(Arrays.asList(codes)); return this; }
+        
+        // Used by storage backends when restoring a stored course
+        Builder active(boolean active) { this.active = active; return this; }
+        Builder version(long version) { this.version = version; return this; }
         
         public Course build() {
             return new Course(this);
@@ -136,6 +244,8 @@ class Course implements Displayable {
         System.out.println("Instructor: " + instructor);
         System.out.println("Semester: " + semester);
         System.out.println("Department: " + department);
+        System.out.println("Capacity: " + (capacity > 0 ? String.valueOf(capacity) : "Unlimited"));
+        System.out.println("Prerequisites: " + (prerequisites.isEmpty() ? "None" : String.join(", ", prerequisites)));
         System.out.println("Status: " + (active ? "Active" : "Inactive"));
     }
     
@@ -146,68 +256,2568 @@ class Course implements Displayable {
     public String getInstructor() { return instructor; }
     public Semester getSemester() { return semester; }
     public String getDepartment() { return department; }
+    public int getCapacity() { return capacity; }
+    public List<String> getPrerequisites() { return prerequisites; }
     public boolean isActive() { return active; }
+    public long getVersion() { return version; }
+    
+    // Setter
+    public void setActive(boolean active) {
+        this.active = active;
+        this.version = RecordVersions.getInstance().stamp(this, version);
+    }
+    
+    @Override
+    public String toString() {
+        return code + " - " + title + " (" + credits + " credits)";
+    }
+}
+
+// Enrollment class
+class Enrollment {
+    private String studentId;
+    private String courseCode;
+    private Semester semester;
+    private double marks;
+    private Grade grade;
+    private LocalDate enrollmentDate;
+    private long version;
+    private boolean dropped;
+    
+    public Enrollment(String studentId, String courseCode, Semester semester) {
+        this.studentId = studentId;
+        this.courseCode = courseCode;
+        this.semester = semester;
+        this.enrollmentDate = LocalDate.now();
+        this.marks = 0.0;
+        this.grade = Grade.F;
+        this.version = RecordVersions.getInstance().stamp(this, 0);
+    }
+    
+    // Restores an archived enrollment without touching the current date or version
+    Enrollment(String studentId, String courseCode, Semester semester, LocalDate enrollmentDate,
+               double marks, long version) {
+        this(studentId, courseCode, semester, enrollmentDate, marks, gradeFor(marks), version, false);
+    }
+    
+    // Restores a stored row, including its grade and whether it records a drop
+    Enrollment(String studentId, String courseCode, Semester semester, LocalDate enrollmentDate,
+               double marks, Grade grade, long version, boolean dropped) {
+        this.studentId = studentId;
+        this.courseCode = courseCode;
+        this.semester = semester;
+        this.enrollmentDate = enrollmentDate;
+        this.marks = marks;
+        this.grade = grade;
+        this.version = version;
+        this.dropped = dropped;
+    }
+    
+    public void setMarks(double marks) {
+        this.marks = marks;
+        this.grade = gradeFor(marks);
+        this.version = RecordVersions.getInstance().stamp(this, version);
+    }
+    
+    // Turns this enrollment into a tombstone with a new version, so change
+    // tracking reports the drop like any other edit
+    void markDropped() {
+        this.dropped = true;
+        this.version = RecordVersions.getInstance().stamp(this, version);
+    }
+    
+    // Determine grade based on marks
+    private static Grade gradeFor(double marks) {
+        if (marks >= 90) return Grade.A;
+        else if (marks >= 80) return Grade.B;
+        else if (marks >= 70) return Grade.C;
+        else if (marks >= 60) return Grade.D;
+        else return Grade.F;
+    }
+    
+    // Getters
+    public String getStudentId() { return studentId; }
+    public String getCourseCode() { return courseCode; }
+    public Semester getSemester() { return semester; }
+    public double getMarks() { return marks; }
+    public Grade getGrade() { return grade; }
+    public LocalDate getEnrollmentDate() { return enrollmentDate; }
+    public long getVersion() { return version; }
+    public boolean isDropped() { return dropped; }
+    public Term getTerm() { return new Term(enrollmentDate.getYear(), semester); }
+}
+
+// Academic term (year + semester) used to partition enrollment history
+final class Term implements Comparable<Term> {
+    private final int year;
+    private final Semester semester;
+    
+    public Term(int year, Semester semester) {
+        this.year = year;
+        this.semester = semester;
+    }
+    
+    public int getYear() { return year; }
+    public Semester getSemester() { return semester; }
+    
+    // Semesters are declared in calendar order, so ordinal order is chronological
+    @Override
+    public int compareTo(Term other) {
+        int byYear = Integer.compare(year, other.year);
+        return byYear != 0 ? byYear : semester.compareTo(other.semester);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Term)) return false;
+        Term other = (Term) o;
+        return year == other.year && semester == other.semester;
+    }
+    
+    @Override
+    public int hashCode() { return 31 * year + semester.hashCode(); }
+    
+    @Override
+    public String toString() { return semester + " " + year; }
+}
+
+// Immutable, compacted segment holding every enrollment of one closed term.
+// Rows are sorted by (student ID, course code) and stored column-wise; IDs are
+// dictionary-encoded and dates are stored as day offsets from the earliest row.
+// A second row order sorted by version answers delta exports without a scan.
+final class EnrollmentSegment {
+    private final Term term;
+    private final String[] studentDict;
+    private final String[] courseDict;
+    private final int[] studentRefs;
+    private final int[] courseRefs;
+    private final int baseDay;
+    private final short[] dayOffsets;
+    private final double[] marks;
+    private final long[] versions;
+    private final int[] versionOrder;
+    
+    EnrollmentSegment(Term term, List<Enrollment> rows) {
+        List<Enrollment> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparing(Enrollment::getStudentId)
+            .thenComparing(Enrollment::getCourseCode, String.CASE_INSENSITIVE_ORDER));
+        
+        this.term = term;
+        this.studentDict = sorted.stream().map(Enrollment::getStudentId)
+            .distinct().sorted().toArray(String[]::new);
+        this.courseDict = sorted.stream().map(Enrollment::getCourseCode)
+            .distinct().sorted().toArray(String[]::new);
+        this.baseDay = sorted.stream()
+            .mapToInt(e -> (int) e.getEnrollmentDate().toEpochDay())
+            .min().orElse(0);
+        
+        int n = sorted.size();
+        this.studentRefs = new int[n];
+        this.courseRefs = new int[n];
+        this.dayOffsets = new short[n];
+        this.marks = new double[n];
+        this.versions = new long[n];
+        for (int i = 0; i < n; i++) {
+            Enrollment e = sorted.get(i);
+            studentRefs[i] = Arrays.binarySearch(studentDict, e.getStudentId());
+            courseRefs[i] = Arrays.binarySearch(courseDict, e.getCourseCode());
+            dayOffsets[i] = (short) (e.getEnrollmentDate().toEpochDay() - baseDay);
+            marks[i] = e.getMarks();
+            versions[i] = e.getVersion();
+        }
+        this.versionOrder = IntStream.range(0, n).boxed()
+            .sorted(Comparator.comparingLong(i -> versions[i]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+    
+    public Term getTerm() { return term; }
+    public int size() { return marks.length; }
+    
+    public List<Enrollment> forStudent(String studentId) {
+        List<Enrollment> result = new ArrayList<>();
+        int ref = Arrays.binarySearch(studentDict, studentId);
+        if (ref < 0) {
+            return result;
+        }
+        for (int i = firstRow(ref); i < studentRefs.length && studentRefs[i] == ref; i++) {
+            result.add(row(i));
+        }
+        return result;
+    }
+    
+    public Enrollment find(String studentId, String courseCode) {
+        return forStudent(studentId).stream()
+            .filter(e -> e.getCourseCode().equalsIgnoreCase(courseCode))
+            .findFirst()
+            .orElse(null);
+    }
+    
+    public List<Enrollment> between(LocalDate from, LocalDate to) {
+        List<Enrollment> result = new ArrayList<>();
+        long fromOffset = from.toEpochDay() - baseDay;
+        long toOffset = to.toEpochDay() - baseDay;
+        for (int i = 0; i < dayOffsets.length; i++) {
+            if (dayOffsets[i] >= fromOffset && dayOffsets[i] <= toOffset) {
+                result.add(row(i));
+            }
+        }
+        return result;
+    }
+    
+    public List<Enrollment> all() {
+        List<Enrollment> result = new ArrayList<>(marks.length);
+        for (int i = 0; i < marks.length; i++) {
+            result.add(row(i));
+        }
+        return result;
+    }
+    
+    // Rows whose version is newer than the given one, in version order
+    public List<Enrollment> changedSince(long version) {
+        int lo = 0, hi = versionOrder.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (versions[versionOrder[mid]] <= version) lo = mid + 1;
+            else hi = mid;
+        }
+        List<Enrollment> result = new ArrayList<>();
+        for (int i = lo; i < versionOrder.length; i++) {
+            result.add(row(versionOrder[i]));
+        }
+        return result;
+    }
+    
+    // Lower bound of the rows belonging to a student reference
+    private int firstRow(int ref) {
+        int lo = 0, hi = studentRefs.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (studentRefs[mid] < ref) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+    
+    private Enrollment row(int i) {
+        return new Enrollment(studentDict[studentRefs[i]], courseDict[courseRefs[i]],
+            term.getSemester(), LocalDate.ofEpochDay(baseDay + dayOffsets[i]), marks[i], versions[i]);
+    }
+}
+
+// Storage abstraction for enrollments
+interface EnrollmentStore {
+    void add(Enrollment enrollment) throws TermClosedException;
+    // Returns false when the student is not enrolled in the course
+    boolean remove(String studentId, String courseCode) throws TermClosedException;
+    // Persists a mutation made through Enrollment.setMarks
+    void update(Enrollment enrollment);
+    // A course may be retaken in a later term; this returns the latest attempt
+    Enrollment find(String studentId, String courseCode);
+    List<Enrollment> forStudent(String studentId);
+    List<Enrollment> forTerm(Term term);
+    List<Enrollment> between(LocalDate from, LocalDate to);
+    // Enrollments of a course in one term, i.e. seats taken; 0 once the term is closed
+    int countOpen(String courseCode, Term term);
+    boolean isClosed(Term term);
+    int closeTerm(Term term);
+    // Enrollments changed after a version, in version order
+    List<Enrollment> changedSince(long version);
+}
+
+// Enrollment history partitioned by term. Only open terms are kept as mutable
+// lists; closing a term compacts it into an EnrollmentSegment.
+class EnrollmentHistory implements EnrollmentStore {
+    private final NavigableMap<Term, List<Enrollment>> openTerms = new TreeMap<>();
+    private final NavigableMap<Term, EnrollmentSegment> closedTerms = new TreeMap<>();
+    
+    @Override
+    public void add(Enrollment enrollment) throws TermClosedException {
+        Term term = enrollment.getTerm();
+        if (closedTerms.containsKey(term)) {
+            throw new TermClosedException("Term " + term + " is closed for enrollment");
+        }
+        openTerms.computeIfAbsent(term, t -> new ArrayList<>()).add(enrollment);
+    }
+    
+    @Override
+    public boolean remove(String studentId, String courseCode) throws TermClosedException {
+        for (List<Enrollment> rows : openTerms.descendingMap().values()) {
+            for (Iterator<Enrollment> it = rows.iterator(); it.hasNext(); ) {
+                Enrollment e = it.next();
+                if (e.getStudentId().equals(studentId) && e.getCourseCode().equalsIgnoreCase(courseCode)) {
+                    it.remove();
+                    // The dropped object stays in the journal as the tombstone for delta exports
+                    e.markDropped();
+                    return true;
+                }
+            }
+        }
+        for (EnrollmentSegment segment : closedTerms.values()) {
+            if (segment.find(studentId, courseCode) != null) {
+                throw new TermClosedException("Term " + segment.getTerm() + " is closed");
+            }
+        }
+        return false;
+    }
+    
+    // Open-term enrollments are live objects, so there is nothing to write back
+    @Override
+    public void update(Enrollment enrollment) {
+    }
+    
+    @Override
+    public boolean isClosed(Term term) {
+        return closedTerms.containsKey(term);
+    }
+    
+    // Freezes a term; returns the number of enrollments compacted
+    @Override
+    public int closeTerm(Term term) {
+        if (closedTerms.containsKey(term)) {
+            return 0;
+        }
+        List<Enrollment> rows = openTerms.remove(term);
+        EnrollmentSegment segment = new EnrollmentSegment(term, rows == null ? List.of() : rows);
+        closedTerms.put(term, segment);
+        // The segment now answers delta exports for these rows, so the journal lets go of them
+        if (rows != null) {
+            for (Enrollment e : rows) {
+                RecordVersions.getInstance().forget(e.getVersion(), e);
+            }
+        }
+        return segment.size();
+    }
+    
+    // Newest open-term match and newest closed-term match; the later term wins
+    @Override
+    public Enrollment find(String studentId, String courseCode) {
+        Enrollment open = null;
+        for (List<Enrollment> rows : openTerms.descendingMap().values()) {
+            for (Enrollment e : rows) {
+                if (e.getStudentId().equals(studentId) && e.getCourseCode().equalsIgnoreCase(courseCode)) {
+                    open = e;
+                    break;
+                }
+            }
+            if (open != null) {
+                break;
+            }
+        }
+        Enrollment closed = null;
+        for (EnrollmentSegment segment : closedTerms.descendingMap().values()) {
+            closed = segment.find(studentId, courseCode);
+            if (closed != null) {
+                break;
+            }
+        }
+        if (open == null || closed == null) {
+            return open != null ? open : closed;
+        }
+        return open.getTerm().compareTo(closed.getTerm()) > 0 ? open : closed;
+    }
+    
+    @Override
+    public List<Enrollment> forStudent(String studentId) {
+        List<Enrollment> result = new ArrayList<>();
+        for (EnrollmentSegment segment : closedTerms.values()) {
+            result.addAll(segment.forStudent(studentId));
+        }
+        openTerms.values().forEach(rows -> rows.stream()
+            .filter(e -> e.getStudentId().equals(studentId))
+            .forEach(result::add));
+        return result;
+    }
+    
+    @Override
+    public List<Enrollment> forTerm(Term term) {
+        EnrollmentSegment segment = closedTerms.get(term);
+        if (segment != null) {
+            return segment.all();
+        }
+        return new ArrayList<>(openTerms.getOrDefault(term, List.of()));
+    }
+    
+    // Only partitions whose year overlaps [from, to] are scanned
+    @Override
+    public List<Enrollment> between(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            return new ArrayList<>();
+        }
+        Term first = new Term(from.getYear(), Semester.values()[0]);
+        Term last = new Term(to.getYear(), Semester.values()[Semester.values().length - 1]);
+        
+        List<Enrollment> result = new ArrayList<>();
+        closedTerms.subMap(first, true, last, true).values()
+            .forEach(segment -> result.addAll(segment.between(from, to)));
+        openTerms.subMap(first, true, last, true).values()
+            .forEach(rows -> rows.stream()
+                .filter(e -> !e.getEnrollmentDate().isBefore(from) && !e.getEnrollmentDate().isAfter(to))
+                .forEach(result::add));
+        return result;
+    }
+    
+    @Override
+    public int countOpen(String courseCode, Term term) {
+        int count = 0;
+        for (Enrollment e : openTerms.getOrDefault(term, List.of())) {
+            if (e.getCourseCode().equalsIgnoreCase(courseCode)) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    // Open-term enrollments are tracked by the RecordVersions journal; closed
+    // terms answer from their segments
+    @Override
+    public List<Enrollment> changedSince(long version) {
+        List<Enrollment> result = new ArrayList<>();
+        for (EnrollmentSegment segment : closedTerms.values()) {
+            result.addAll(segment.changedSince(version));
+        }
+        for (Object record : RecordVersions.getInstance().changedSince(version)) {
+            if (record instanceof Enrollment) {
+                result.add((Enrollment) record);
+            }
+        }
+        result.sort(Comparator.comparingLong(Enrollment::getVersion));
+        return result;
+    }
+}
+
+// Enrollment store keeping rows outside the Java heap, so millions of
+// enrollments add nothing for the garbage collector to trace. Rows are
+// fixed-width records in direct ByteBuffer chunks, and an open-addressing
+// hash index on (student ID, course code) lives off-heap as well. Marks and
+// grade are updated in place; Enrollment objects exist only as query results.
+// A retaken course has one row per attempt and the index points at the latest.
+// Each row also links to the previous row of its student and of its course,
+// so per-student queries and seat counts only visit those rows. Term and date
+// queries still read every record, but only matching rows become objects.
+class OffHeapEnrollmentStore implements EnrollmentStore {
+    // Record layout: IDs are a length byte followed by up to 31 UTF-8 bytes
+    private static final int KEY_BYTES = 32;
+    private static final int STUDENT = 0;
+    private static final int COURSE = STUDENT + KEY_BYTES;
+    private static final int MARKS = COURSE + KEY_BYTES;
+    private static final int VERSION = MARKS + 8;
+    private static final int EPOCH_DAY = VERSION + 8;
+    private static final int SEMESTER = EPOCH_DAY + 4;
+    private static final int GRADE = SEMESTER + 1;
+    private static final int FLAGS = GRADE + 1;
+    // Previous row with the same student / course, or -1
+    private static final int PREV_BY_STUDENT = 88;
+    private static final int PREV_BY_COURSE = PREV_BY_STUDENT + 4;
+    private static final int RECORD_BYTES = 96;
+    // Flag of a dropped row; it stays as a tombstone and its slot is not reused
+    private static final byte DROPPED = 1;
+    
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+    
+    // Index slot: row + 1 (0 marks an empty slot) followed by the key hash
+    private static final int SLOT_BYTES = 8;
+    // Change log entry: version followed by row
+    private static final int LOG_BYTES = 12;
+    
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private final Set<Term> closedTerms = new HashSet<>();
+    private final RowChains byStudent;
+    private final RowChains byCourse;
+    private ByteBuffer index;
+    private int indexMask;
+    private ByteBuffer changeLog;
+    private int logEntries;
+    private int rows;
+    private int deleted;
+    
+    // Encoded probe keys and the stored course code, reused between calls
+    private final byte[] studentKey = new byte[KEY_BYTES];
+    private final byte[] courseKey = new byte[KEY_BYTES];
+    private final byte[] storedCourse = new byte[KEY_BYTES];
+    
+    public OffHeapEnrollmentStore() {
+        this(1024);
+    }
+    
+    public OffHeapEnrollmentStore(int expectedRows) {
+        int slots = Integer.highestOneBit(Math.max(16, expectedRows * 2 - 1)) << 1;
+        this.index = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+        this.indexMask = slots - 1;
+        this.changeLog = ByteBuffer.allocateDirect(Math.max(16, expectedRows) * LOG_BYTES);
+        this.byStudent = new RowChains(STUDENT, PREV_BY_STUDENT, false, expectedRows);
+        this.byCourse = new RowChains(COURSE, PREV_BY_COURSE, true, 64);
+    }
+    
+    @Override
+    public void add(Enrollment enrollment) throws TermClosedException {
+        Term term = enrollment.getTerm();
+        if (closedTerms.contains(term)) {
+            throw new TermClosedException("Term " + term + " is closed for enrollment");
+        }
+        if (!encodeKeys(enrollment.getStudentId(), enrollment.getCourseCode())
+                || !encode(enrollment.getCourseCode(), storedCourse, false)) {
+            throw new StorageException("Student IDs and course codes are limited to " + (KEY_BYTES - 1)
+                + " bytes in the off-heap store", null);
+        }
+        if (rowInTerm(term) >= 0) {
+            throw new StorageException("Duplicate enrollment " + enrollment.getStudentId()
+                + "/" + enrollment.getCourseCode() + " in " + term, null);
+        }
+        int hash = keyHash();
+        int indexed = lookup(hash);
+        
+        int row = rows;
+        if ((row >>> CHUNK_SHIFT) == chunks.size()) {
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_ROWS * RECORD_BYTES));
+        }
+        ByteBuffer chunk = chunk(row);
+        int base = offset(row);
+        chunk.put(base + STUDENT, studentKey, 0, KEY_BYTES);
+        chunk.put(base + COURSE, storedCourse, 0, KEY_BYTES);
+        chunk.putDouble(base + MARKS, enrollment.getMarks());
+        chunk.putLong(base + VERSION, enrollment.getVersion());
+        chunk.putInt(base + EPOCH_DAY, (int) enrollment.getEnrollmentDate().toEpochDay());
+        chunk.put(base + SEMESTER, (byte) enrollment.getSemester().ordinal());
+        chunk.put(base + GRADE, (byte) enrollment.getGrade().ordinal());
+        chunk.put(base + FLAGS, (byte) 0);
+        rows++;
+        
+        if (indexed < 0) {
+            insertSlot(row, hash);
+        } else if (term.compareTo(termOf(indexed)) > 0) {
+            index.putInt(findSlot(hash) * SLOT_BYTES, row + 1);
+        }
+        byStudent.link(row, studentKey);
+        byCourse.link(row, courseKey);
+        logChange(enrollment.getVersion(), row);
+        RecordVersions.getInstance().forget(enrollment.getVersion(), enrollment);
+    }
+    
+    @Override
+    public boolean remove(String studentId, String courseCode) throws TermClosedException {
+        int slot = encodeKeys(studentId, courseCode) ? findSlot(keyHash()) : -1;
+        if (slot < 0) {
+            return false;
+        }
+        int row = index.getInt(slot * SLOT_BYTES) - 1;
+        Term term = termOf(row);
+        if (closedTerms.contains(term)) {
+            throw new TermClosedException("Term " + term + " is closed");
+        }
+        
+        Enrollment tombstone = read(row);
+        tombstone.markDropped();
+        ByteBuffer chunk = chunk(row);
+        int base = offset(row);
+        chunk.put(base + FLAGS, DROPPED);
+        chunk.putLong(base + VERSION, tombstone.getVersion());
+        deleted++;
+        // An earlier attempt at the course becomes the indexed row again
+        int previous = latestRow();
+        if (previous < 0) {
+            deleteSlot(slot);
+        } else {
+            index.putInt(slot * SLOT_BYTES, previous + 1);
+        }
+        
+        logChange(tombstone.getVersion(), row);
+        RecordVersions.getInstance().forget(tombstone.getVersion(), tombstone);
+        return true;
+    }
+    
+    // Writes marks, grade and version back into the record of the enrollment's term
+    @Override
+    public void update(Enrollment enrollment) {
+        int row = encodeKeys(enrollment.getStudentId(), enrollment.getCourseCode())
+            ? rowInTerm(enrollment.getTerm()) : -1;
+        if (row < 0) {
+            throw new StorageException("Unknown enrollment " + enrollment.getStudentId()
+                + "/" + enrollment.getCourseCode(), null);
+        }
+        ByteBuffer chunk = chunk(row);
+        int base = offset(row);
+        chunk.putDouble(base + MARKS, enrollment.getMarks());
+        chunk.put(base + GRADE, (byte) enrollment.getGrade().ordinal());
+        chunk.putLong(base + VERSION, enrollment.getVersion());
+        
+        logChange(enrollment.getVersion(), row);
+        RecordVersions.getInstance().forget(enrollment.getVersion(), enrollment);
+    }
+    
+    @Override
+    public Enrollment find(String studentId, String courseCode) {
+        if (!encodeKeys(studentId, courseCode)) {
+            return null;
+        }
+        int row = lookup(keyHash());
+        return row < 0 ? null : read(row);
+    }
+    
+    @Override
+    public List<Enrollment> forStudent(String studentId) {
+        List<Enrollment> result = new ArrayList<>();
+        if (!encode(studentId, studentKey, false)) {
+            return result;
+        }
+        for (int row = byStudent.newest(studentKey); row >= 0; row = byStudent.previous(row)) {
+            if (!isDeleted(row)) {
+                result.add(read(row));
+            }
+        }
+        // Chains run newest first; callers expect insertion order
+        Collections.reverse(result);
+        return result;
+    }
+    
+    @Override
+    public List<Enrollment> forTerm(Term term) {
+        int[] range = termRange(term);
+        List<Enrollment> result = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            if (inRange(row, range) && !isDeleted(row)) {
+                result.add(read(row));
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public List<Enrollment> between(LocalDate from, LocalDate to) {
+        long firstDay = from.toEpochDay();
+        long lastDay = to.toEpochDay();
+        List<Enrollment> result = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            int day = chunk(row).getInt(offset(row) + EPOCH_DAY);
+            if (day >= firstDay && day <= lastDay && !isDeleted(row)) {
+                result.add(read(row));
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public int countOpen(String courseCode, Term term) {
+        if (closedTerms.contains(term) || !encode(courseCode, courseKey, true)) {
+            return 0;
+        }
+        int[] range = termRange(term);
+        int count = 0;
+        for (int row = byCourse.newest(courseKey); row >= 0; row = byCourse.previous(row)) {
+            if (!isDeleted(row) && inRange(row, range)) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    @Override
+    public boolean isClosed(Term term) {
+        return closedTerms.contains(term);
+    }
+    
+    // Rows are already compact, so closing a term only makes it read-only;
+    // its rows are counted in place
+    @Override
+    public int closeTerm(Term term) {
+        if (!closedTerms.add(term)) {
+            return 0;
+        }
+        int[] range = termRange(term);
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (inRange(row, range) && !isDeleted(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    // Log entries are appended in version order, so the tail after the first
+    // newer version holds every change; entries superseded by a later update
+    // of the same row are skipped. Dropped rows come back as tombstones.
+    @Override
+    public List<Enrollment> changedSince(long version) {
+        int lo = 0, hi = logEntries;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (changeLog.getLong(mid * LOG_BYTES) <= version) lo = mid + 1;
+            else hi = mid;
+        }
+        List<Enrollment> result = new ArrayList<>();
+        for (int i = lo; i < logEntries; i++) {
+            long logged = changeLog.getLong(i * LOG_BYTES);
+            int row = changeLog.getInt(i * LOG_BYTES + 8);
+            if (chunk(row).getLong(offset(row) + VERSION) == logged) {
+                result.add(read(row));
+            }
+        }
+        return result;
+    }
+    
+    public int size() { return rows - deleted; }
+    
+    private ByteBuffer chunk(int row) {
+        return chunks.get(row >>> CHUNK_SHIFT);
+    }
+    
+    private int offset(int row) {
+        return (row & (CHUNK_ROWS - 1)) * RECORD_BYTES;
+    }
+    
+    private boolean isDeleted(int row) {
+        return chunk(row).get(offset(row) + FLAGS) == DROPPED;
+    }
+    
+    private Term termOf(int row) {
+        ByteBuffer chunk = chunk(row);
+        int base = offset(row);
+        return new Term(LocalDate.ofEpochDay(chunk.getInt(base + EPOCH_DAY)).getYear(),
+            Semester.values()[chunk.get(base + SEMESTER)]);
+    }
+    
+    // Live row of the probe keys in the term, or -1; only the student's rows are visited
+    private int rowInTerm(Term term) {
+        int[] range = termRange(term);
+        for (int row = byStudent.newest(studentKey); row >= 0; row = byStudent.previous(row)) {
+            if (!isDeleted(row) && inRange(row, range)
+                    && keyEquals(chunk(row), offset(row) + COURSE, courseKey, true)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+    
+    // Live row of the probe keys with the latest term, or -1
+    private int latestRow() {
+        int latest = -1;
+        for (int row = byStudent.newest(studentKey); row >= 0; row = byStudent.previous(row)) {
+            if (!isDeleted(row) && keyEquals(chunk(row), offset(row) + COURSE, courseKey, true)
+                    && (latest < 0 || termOf(row).compareTo(termOf(latest)) > 0)) {
+                latest = row;
+            }
+        }
+        return latest;
+    }
+    
+    // A term spans the enrollment dates of its year with a matching semester
+    private static int[] termRange(Term term) {
+        return new int[] {
+            (int) LocalDate.of(term.getYear(), 1, 1).toEpochDay(),
+            (int) LocalDate.of(term.getYear(), 12, 31).toEpochDay(),
+            term.getSemester().ordinal()
+        };
+    }
+    
+    private boolean inRange(int row, int[] range) {
+        ByteBuffer chunk = chunk(row);
+        int base = offset(row);
+        int day = chunk.getInt(base + EPOCH_DAY);
+        return day >= range[0] && day <= range[1] && chunk.get(base + SEMESTER) == range[2];
+    }
+    
+    private Enrollment read(int row) {
+        ByteBuffer chunk = chunk(row);
+        int base = offset(row);
+        return new Enrollment(decode(chunk, base + STUDENT), decode(chunk, base + COURSE),
+            Semester.values()[chunk.get(base + SEMESTER)],
+            LocalDate.ofEpochDay(chunk.getInt(base + EPOCH_DAY)),
+            chunk.getDouble(base + MARKS), Grade.values()[chunk.get(base + GRADE)],
+            chunk.getLong(base + VERSION), isDeleted(row));
+    }
+    
+    private int lookup(int hash) {
+        int slot = findSlot(hash);
+        return slot < 0 ? -1 : index.getInt(slot * SLOT_BYTES) - 1;
+    }
+    
+    // Index slot holding the probe keys, or -1
+    private int findSlot(int hash) {
+        for (int slot = hash & indexMask; ; slot = (slot + 1) & indexMask) {
+            int entry = index.getInt(slot * SLOT_BYTES);
+            if (entry == 0) {
+                return -1;
+            }
+            int row = entry - 1;
+            if (index.getInt(slot * SLOT_BYTES + 4) == hash
+                    && keyEquals(chunk(row), offset(row) + STUDENT, studentKey, false)
+                    && keyEquals(chunk(row), offset(row) + COURSE, courseKey, true)) {
+                return slot;
+            }
+        }
+    }
+    
+    // Backward-shift deletion: later entries of the probe run move into the
+    // hole when their home slot does not lie between the hole and themselves
+    private void deleteSlot(int slot) {
+        int hole = slot;
+        for (int next = (hole + 1) & indexMask; ; next = (next + 1) & indexMask) {
+            int entry = index.getInt(next * SLOT_BYTES);
+            if (entry == 0) {
+                break;
+            }
+            int hash = index.getInt(next * SLOT_BYTES + 4);
+            int home = hash & indexMask;
+            if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+                index.putInt(hole * SLOT_BYTES, entry);
+                index.putInt(hole * SLOT_BYTES + 4, hash);
+                hole = next;
+            }
+        }
+        index.putInt(hole * SLOT_BYTES, 0);
+        index.putInt(hole * SLOT_BYTES + 4, 0);
+    }
+    
+    // Keeps the index at most half full, doubling it off-heap when needed
+    private void insertSlot(int row, int hash) {
+        if (rows * 2 > indexMask + 1) {
+            ByteBuffer old = index;
+            int oldSlots = indexMask + 1;
+            index = ByteBuffer.allocateDirect(oldSlots * 2 * SLOT_BYTES);
+            indexMask = oldSlots * 2 - 1;
+            for (int slot = 0; slot < oldSlots; slot++) {
+                int entry = old.getInt(slot * SLOT_BYTES);
+                if (entry != 0) {
+                    place(entry, old.getInt(slot * SLOT_BYTES + 4));
+                }
+            }
+        }
+        place(row + 1, hash);
+    }
+    
+    private void place(int entry, int hash) {
+        int slot = hash & indexMask;
+        while (index.getInt(slot * SLOT_BYTES) != 0) {
+            slot = (slot + 1) & indexMask;
+        }
+        index.putInt(slot * SLOT_BYTES, entry);
+        index.putInt(slot * SLOT_BYTES + 4, hash);
+    }
+    
+    private void logChange(long version, int row) {
+        if ((logEntries + 1) * LOG_BYTES > changeLog.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(changeLog.capacity() * 2);
+            grown.put(changeLog.duplicate().position(0).limit(logEntries * LOG_BYTES));
+            changeLog = grown;
+        }
+        changeLog.putLong(logEntries * LOG_BYTES, version);
+        changeLog.putInt(logEntries * LOG_BYTES + 8, row);
+        logEntries++;
+    }
+    
+    // Fills the probe keys; course codes match case-insensitively, so their key is upper-cased
+    private boolean encodeKeys(String studentId, String courseCode) {
+        return encode(studentId, studentKey, false) && encode(courseCode, courseKey, true);
+    }
+    
+    // Returns false when the value does not fit in a fixed-width key
+    private static boolean encode(String value, byte[] key, boolean upperCase) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= KEY_BYTES) {
+            return false;
+        }
+        Arrays.fill(key, (byte) 0);
+        key[0] = (byte) bytes.length;
+        for (int i = 0; i < bytes.length; i++) {
+            key[i + 1] = upperCase ? upper(bytes[i]) : bytes[i];
+        }
+        return true;
+    }
+    
+    private static boolean keyEquals(ByteBuffer chunk, int at, byte[] key, boolean ignoreCase) {
+        int length = key[0];
+        if (chunk.get(at) != length) {
+            return false;
+        }
+        for (int i = 1; i <= length; i++) {
+            byte b = chunk.get(at + i);
+            if ((ignoreCase ? upper(b) : b) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // ASCII-only case folding, matching course codes byte by byte
+    private static byte upper(byte b) {
+        return b >= 'a' && b <= 'z' ? (byte) (b - ('a' - 'A')) : b;
+    }
+    
+    // FNV-1a over the encoded student ID and upper-cased course code
+    private int keyHash() {
+        int hash = fnv(fnv(0x811c9dc5, studentKey), courseKey);
+        return hash ^ (hash >>> 16);
+    }
+    
+    private static int fnv(int hash, byte[] key) {
+        for (int i = 0; i <= key[0]; i++) {
+            hash = (hash ^ key[i]) * 0x01000193;
+        }
+        return hash;
+    }
+    
+    private static String decode(ByteBuffer chunk, int at) {
+        byte[] bytes = new byte[chunk.get(at)];
+        chunk.get(at + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // Off-heap open-addressing table from one key of the record to the newest
+    // row holding it; older rows follow through the record's link field.
+    // Dropped rows stay linked and are skipped by the walk.
+    private final class RowChains {
+        private final int keyAt;
+        private final int linkAt;
+        private final boolean ignoreCase;
+        private ByteBuffer heads;
+        private int mask;
+        private int keys;
+        
+        RowChains(int keyAt, int linkAt, boolean ignoreCase, int expectedKeys) {
+            int slots = Integer.highestOneBit(Math.max(16, expectedKeys * 2 - 1)) << 1;
+            this.keyAt = keyAt;
+            this.linkAt = linkAt;
+            this.ignoreCase = ignoreCase;
+            this.heads = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+            this.mask = slots - 1;
+        }
+        
+        // Newest row with the encoded key, or -1
+        int newest(byte[] key) {
+            int slot = find(key, hash(key));
+            return slot < 0 ? -1 : heads.getInt(slot * SLOT_BYTES) - 1;
+        }
+        
+        int previous(int row) {
+            return chunk(row).getInt(offset(row) + linkAt);
+        }
+        
+        // Makes the row the head of its key's chain
+        void link(int row, byte[] key) {
+            if ((keys + 1) * 2 > mask + 1) {
+                grow();
+            }
+            int hash = hash(key);
+            int slot = find(key, hash);
+            int previous = -1;
+            if (slot >= 0) {
+                previous = heads.getInt(slot * SLOT_BYTES) - 1;
+            } else {
+                slot = ~slot;
+                heads.putInt(slot * SLOT_BYTES + 4, hash);
+                keys++;
+            }
+            chunk(row).putInt(offset(row) + linkAt, previous);
+            heads.putInt(slot * SLOT_BYTES, row + 1);
+        }
+        
+        // Slot holding the key, or the complement of the empty slot ending its probe run
+        private int find(byte[] key, int hash) {
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int entry = heads.getInt(slot * SLOT_BYTES);
+                if (entry == 0) {
+                    return ~slot;
+                }
+                int row = entry - 1;
+                if (heads.getInt(slot * SLOT_BYTES + 4) == hash
+                        && keyEquals(chunk(row), offset(row) + keyAt, key, ignoreCase)) {
+                    return slot;
+                }
+            }
+        }
+        
+        private void grow() {
+            ByteBuffer old = heads;
+            int oldSlots = mask + 1;
+            heads = ByteBuffer.allocateDirect(oldSlots * 2 * SLOT_BYTES);
+            mask = oldSlots * 2 - 1;
+            for (int slot = 0; slot < oldSlots; slot++) {
+                int entry = old.getInt(slot * SLOT_BYTES);
+                if (entry != 0) {
+                    int hash = old.getInt(slot * SLOT_BYTES + 4);
+                    int free = hash & mask;
+                    while (heads.getInt(free * SLOT_BYTES) != 0) {
+                        free = (free + 1) & mask;
+                    }
+                    heads.putInt(free * SLOT_BYTES, entry);
+                    heads.putInt(free * SLOT_BYTES + 4, hash);
+                }
+            }
+        }
+        
+        private int hash(byte[] key) {
+            int hash = fnv(0x811c9dc5, key);
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
+
+// Storage abstraction for students, courses and enrollments
+interface RecordStore extends AutoCloseable {
+    void addStudent(Student student);
+    // Persists a mutation made through the Student setters
+    void updateStudent(Student student);
+    Student findStudent(String id);
+    List<Student> listStudents();
+    
+    void addCourse(Course course);
+    // Persists a mutation made through Course.setActive
+    void updateCourse(Course course);
+    Course findCourse(String code);
+    List<Course> listCourses();
+    
+    EnrollmentStore enrollments();
+    
+    // Students, courses and enrollments changed after a version, in version order
+    Collection<Object> changedSince(long version);
+    
+    @Override
+    void close();
+}
+
+// In-memory backend keeping every record on the heap
+class InMemoryRecordStore implements RecordStore {
+    private final List<Student> students = new ArrayList<>();
+    private final List<Course> courses = new ArrayList<>();
+    private final EnrollmentStore enrollments;
+    
+    public InMemoryRecordStore() {
+        this(new EnrollmentHistory());
+    }
+    
+    public InMemoryRecordStore(EnrollmentStore enrollments) {
+        this.enrollments = enrollments;
+    }
+    
+    @Override
+    public void addStudent(Student student) { students.add(student); }
+    
+    // Records are live objects, so updates need no write-back
+    @Override
+    public void updateStudent(Student student) { }
+    
+    @Override
+    public Student findStudent(String id) {
+        return students.stream()
+            .filter(s -> s.getId().equals(id))
+            .findFirst()
+            .orElse(null);
+    }
+    
+    @Override
+    public List<Student> listStudents() { return students; }
+    
+    @Override
+    public void addCourse(Course course) { courses.add(course); }
+    
+    @Override
+    public void updateCourse(Course course) { }
+    
+    @Override
+    public Course findCourse(String code) {
+        return courses.stream()
+            .filter(c -> c.getCode().equalsIgnoreCase(code))
+            .findFirst()
+            .orElse(null);
+    }
+    
+    @Override
+    public List<Course> listCourses() { return courses; }
+    
+    @Override
+    public EnrollmentStore enrollments() { return enrollments; }
+    
+    // Students and courses come from the journal; enrollments from their own store
+    @Override
+    public Collection<Object> changedSince(long version) {
+        List<Object> changes = new ArrayList<>();
+        for (Object record : RecordVersions.getInstance().changedSince(version)) {
+            if (!(record instanceof Enrollment)) {
+                changes.add(record);
+            }
+        }
+        changes.addAll(enrollments.changedSince(version));
+        changes.sort(Comparator.comparingLong(RecordVersions::versionOf));
+        return changes;
+    }
+    
+    @Override
+    public void close() { }
+}
+
+// Embedded JDBC backend backed by a local file database (H2 by default).
+// A single connection is reused for the lifetime of the store and statements
+// are prepared once. By default every write is committed before the call
+// returns, so failures reach the caller that made them. Bulk loads pass a
+// batch size; writes are then queued as JDBC batches that are committed
+// before the next read or once the batch is full.
+class JdbcRecordStore implements RecordStore {
+    public static final int BATCH_SIZE = 500;
+    
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS students (id VARCHAR(64) PRIMARY KEY, reg_no VARCHAR(64), "
+            + "full_name VARCHAR(255), email VARCHAR(255), enrollment_date DATE, active BOOLEAN, version BIGINT)",
+        "CREATE TABLE IF NOT EXISTS courses (code_key VARCHAR(64) PRIMARY KEY, code VARCHAR(64), "
+            + "title VARCHAR(255), credits INT, instructor VARCHAR(255), semester VARCHAR(16), "
+            + "department VARCHAR(255), active BOOLEAN, version BIGINT, capacity INT DEFAULT 0, "
+            + "prerequisites VARCHAR(1024) DEFAULT '')",
+        "CREATE TABLE IF NOT EXISTS enrollments (student_id VARCHAR(64), course_key VARCHAR(64), "
+            + "course_code VARCHAR(64), semester VARCHAR(16), term_year INT, enrollment_date DATE, "
+            + "marks DOUBLE PRECISION, grade VARCHAR(1), version BIGINT, "
+            + "PRIMARY KEY (term_year, semester, student_id, course_key))",
+        // Tombstones of dropped enrollments, kept so delta exports can report the drop
+        "CREATE TABLE IF NOT EXISTS enrollment_drops (version BIGINT PRIMARY KEY, student_id VARCHAR(64), "
+            + "course_key VARCHAR(64), course_code VARCHAR(64), semester VARCHAR(16), term_year INT, "
+            + "enrollment_date DATE, marks DOUBLE PRECISION, grade VARCHAR(1))",
+        "CREATE TABLE IF NOT EXISTS closed_terms (term_year INT, semester VARCHAR(16), "
+            + "PRIMARY KEY (term_year, semester))",
+        // Databases created before course capacity and prerequisites existed
+        "ALTER TABLE courses ADD COLUMN IF NOT EXISTS capacity INT DEFAULT 0",
+        "ALTER TABLE courses ADD COLUMN IF NOT EXISTS prerequisites VARCHAR(1024) DEFAULT ''",
+        "CREATE INDEX IF NOT EXISTS idx_students_version ON students (version)",
+        "CREATE INDEX IF NOT EXISTS idx_courses_version ON courses (version)",
+        "CREATE INDEX IF NOT EXISTS idx_enrollments_version ON enrollments (version)",
+        "CREATE INDEX IF NOT EXISTS idx_enrollments_date ON enrollments (enrollment_date)",
+        // The key leads with the term, so term reports need no index of their own.
+        // Statements are prepared while the tables may be empty and the planner
+        // has no statistics, so each lookup gets an index it matches in full
+        "DROP INDEX IF EXISTS idx_enrollments_term",
+        "DROP INDEX IF EXISTS idx_enrollments_course",
+        "CREATE INDEX IF NOT EXISTS idx_enrollments_student ON enrollments (student_id, course_key)",
+        "CREATE INDEX IF NOT EXISTS idx_enrollments_seats ON enrollments (course_key, term_year, semester)"
+    };
+    
+    private static final String STUDENT_COLUMNS = "SELECT s.id, s.reg_no, s.full_name, s.email, "
+        + "s.enrollment_date, s.active, s.version, e.course_code FROM students s "
+        + "LEFT JOIN enrollments e ON e.student_id = s.id ";
+    private static final String COURSE_COLUMNS = "SELECT code, title, credits, instructor, semester, "
+        + "department, active, version, capacity, prerequisites FROM courses ";
+    private static final String ENROLLMENT_FIELDS = "SELECT student_id, course_code, semester, "
+        + "enrollment_date, marks, grade, version ";
+    private static final String ENROLLMENT_COLUMNS = ENROLLMENT_FIELDS + "FROM enrollments ";
+    private static final String DROP_COLUMNS = ENROLLMENT_FIELDS + "FROM enrollment_drops ";
+    
+    private final Connection connection;
+    private final int batchSize;
+    private final Set<Term> closedTerms = new HashSet<>();
+    private final EnrollmentStore enrollments = new JdbcEnrollmentStore();
+    
+    private final PreparedStatement insertStudent;
+    private final PreparedStatement insertCourse;
+    private final PreparedStatement insertEnrollment;
+    private final PreparedStatement updateStudent;
+    private final PreparedStatement updateCourse;
+    private final PreparedStatement updateEnrollment;
+    private final PreparedStatement insertDrop;
+    private final PreparedStatement deleteEnrollment;
+    // Statement whose batch holds the latest queued writes, or null
+    private PreparedStatement batching;
+    private int pendingWrites;
+    
+    private final PreparedStatement selectStudent;
+    private final PreparedStatement selectStudents;
+    private final PreparedStatement selectCourse;
+    private final PreparedStatement selectCourses;
+    private final PreparedStatement selectEnrollment;
+    private final PreparedStatement selectStudentEnrollments;
+    private final PreparedStatement selectTermEnrollments;
+    private final PreparedStatement selectEnrollmentsBetween;
+    private final PreparedStatement countOpenEnrollments;
+    private final PreparedStatement insertClosedTerm;
+    private final PreparedStatement selectStudentsSince;
+    private final PreparedStatement selectCoursesSince;
+    private final PreparedStatement selectEnrollmentsSince;
+    private final PreparedStatement selectDropsSince;
+    
+    public JdbcRecordStore(String url) {
+        this(url, 1);
+    }
+    
+    public JdbcRecordStore(String url, int batchSize) {
+        this.batchSize = batchSize;
+        try {
+            this.connection = DriverManager.getConnection(url);
+            connection.setAutoCommit(false);
+            try (Statement ddl = connection.createStatement()) {
+                for (String sql : SCHEMA) {
+                    ddl.execute(sql);
+                }
+                migrateEnrollmentKey(ddl);
+            }
+            connection.commit();
+            
+            this.insertStudent = connection.prepareStatement("INSERT INTO students (id, reg_no, full_name, "
+                + "email, enrollment_date, active, version) VALUES (?, ?, ?, ?, ?, ?, ?)");
+            this.insertCourse = connection.prepareStatement("INSERT INTO courses (code_key, code, title, "
+                + "credits, instructor, semester, department, active, version, capacity, prerequisites) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            this.insertEnrollment = connection.prepareStatement("INSERT INTO enrollments (student_id, "
+                + "course_key, course_code, semester, term_year, enrollment_date, marks, grade, version) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            this.updateStudent = connection.prepareStatement("UPDATE students SET full_name = ?, email = ?, "
+                + "active = ?, version = ? WHERE id = ?");
+            this.updateCourse = connection.prepareStatement("UPDATE courses SET active = ?, version = ? "
+                + "WHERE code_key = ?");
+            this.updateEnrollment = connection.prepareStatement("UPDATE enrollments SET marks = ?, grade = ?, "
+                + "version = ? WHERE student_id = ? AND course_key = ? AND term_year = ? AND semester = ?");
+            this.insertDrop = connection.prepareStatement("INSERT INTO enrollment_drops (version, student_id, "
+                + "course_key, course_code, semester, term_year, enrollment_date, marks, grade) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            this.deleteEnrollment = connection.prepareStatement("DELETE FROM enrollments "
+                + "WHERE student_id = ? AND course_key = ? AND term_year = ? AND semester = ?");
+            
+            this.selectStudent = connection.prepareStatement(STUDENT_COLUMNS + "WHERE s.id = ?");
+            this.selectStudents = connection.prepareStatement(STUDENT_COLUMNS + "ORDER BY s.id");
+            this.selectCourse = connection.prepareStatement(COURSE_COLUMNS + "WHERE code_key = ?");
+            this.selectCourses = connection.prepareStatement(COURSE_COLUMNS + "ORDER BY code_key");
+            this.selectEnrollment = connection.prepareStatement(ENROLLMENT_COLUMNS
+                + "WHERE student_id = ? AND course_key = ? ORDER BY term_year DESC, enrollment_date DESC "
+                + "FETCH FIRST 1 ROWS ONLY");
+            this.selectStudentEnrollments = connection.prepareStatement(ENROLLMENT_COLUMNS
+                + "WHERE student_id = ? ORDER BY term_year, enrollment_date");
+            this.selectTermEnrollments = connection.prepareStatement(ENROLLMENT_COLUMNS
+                + "WHERE term_year = ? AND semester = ? ORDER BY student_id, course_key");
+            this.selectEnrollmentsBetween = connection.prepareStatement(ENROLLMENT_COLUMNS
+                + "WHERE enrollment_date BETWEEN ? AND ? ORDER BY enrollment_date");
+            this.countOpenEnrollments = connection.prepareStatement("SELECT COUNT(*) FROM enrollments "
+                + "WHERE course_key = ? AND term_year = ? AND semester = ?");
+            this.insertClosedTerm = connection.prepareStatement("INSERT INTO closed_terms (term_year, semester) "
+                + "VALUES (?, ?)");
+            this.selectStudentsSince = connection.prepareStatement(STUDENT_COLUMNS
+                + "WHERE s.version > ? ORDER BY s.id");
+            this.selectCoursesSince = connection.prepareStatement(COURSE_COLUMNS + "WHERE version > ?");
+            this.selectEnrollmentsSince = connection.prepareStatement(ENROLLMENT_COLUMNS + "WHERE version > ?");
+            this.selectDropsSince = connection.prepareStatement(DROP_COLUMNS + "WHERE version > ?");
+            
+            loadState();
+        } catch (SQLException e) {
+            throw new StorageException("Cannot open database " + url, e);
+        }
+    }
+    
+    // Databases created before retakes were allowed keyed enrollments on
+    // (student_id, course_key) alone; the term joins the key so a course can
+    // be taken again in a later term
+    private void migrateEnrollmentKey(Statement ddl) throws SQLException {
+        boolean hasKey = false;
+        try (ResultSet rs = connection.getMetaData().getPrimaryKeys(null, null, "ENROLLMENTS")) {
+            while (rs.next()) {
+                if (rs.getInt("KEY_SEQ") == 1 && "TERM_YEAR".equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                    return;
+                }
+                hasKey = true;
+            }
+        }
+        // DDL commits on its own, so each step must also work after an interrupted migration
+        if (hasKey) {
+            ddl.execute("ALTER TABLE enrollments DROP PRIMARY KEY");
+        }
+        ddl.execute("ALTER TABLE enrollments ALTER COLUMN term_year SET NOT NULL");
+        ddl.execute("ALTER TABLE enrollments ALTER COLUMN semester SET NOT NULL");
+        ddl.execute("ALTER TABLE enrollments ADD PRIMARY KEY (term_year, semester, student_id, course_key)");
+    }
+    
+    // Loads closed terms and moves the version clock past every stored version
+    private void loadState() throws SQLException {
+        try (Statement query = connection.createStatement()) {
+            try (ResultSet rs = query.executeQuery("SELECT term_year, semester FROM closed_terms")) {
+                while (rs.next()) {
+                    closedTerms.add(new Term(rs.getInt(1), Semester.valueOf(rs.getString(2))));
+                }
+            }
+            for (String table : new String[] { "students", "courses", "enrollments", "enrollment_drops" }) {
+                try (ResultSet rs = query.executeQuery("SELECT MAX(version) FROM " + table)) {
+                    if (rs.next()) {
+                        RecordVersions.getInstance().advanceTo(rs.getLong(1));
+                    }
+                }
+            }
+        }
+        // Change tracking is answered by the version indexes, not the heap journal
+        RecordVersions.getInstance().setJournalEnabled(false);
+    }
+    
+    @Override
+    public void addStudent(Student student) {
+        try {
+            insertStudent.setString(1, fit(student.getId(), 64, "Student ID"));
+            insertStudent.setString(2, fit(student.getRegNo(), 64, "Registration number"));
+            insertStudent.setString(3, fit(student.getFullName(), 255, "Full name"));
+            insertStudent.setString(4, fit(student.getEmail(), 255, "Email"));
+            insertStudent.setDate(5, Date.valueOf(student.getEnrollmentDate()));
+            insertStudent.setBoolean(6, student.isActive());
+            insertStudent.setLong(7, student.getVersion());
+            queue(insertStudent);
+        } catch (SQLException e) {
+            throw new StorageException("Cannot add student " + student.getId(), e);
+        }
+    }
+    
+    @Override
+    public void updateStudent(Student student) {
+        try {
+            updateStudent.setString(1, fit(student.getFullName(), 255, "Full name"));
+            updateStudent.setString(2, fit(student.getEmail(), 255, "Email"));
+            updateStudent.setBoolean(3, student.isActive());
+            updateStudent.setLong(4, student.getVersion());
+            updateStudent.setString(5, student.getId());
+            queue(updateStudent);
+        } catch (SQLException e) {
+            throw new StorageException("Cannot update student " + student.getId(), e);
+        }
+    }
+    
+    @Override
+    public Student findStudent(String id) {
+        try {
+            flush();
+            selectStudent.setString(1, id);
+            List<Student> found = readStudents(selectStudent);
+            return found.isEmpty() ? null : found.get(0);
+        } catch (SQLException e) {
+            throw new StorageException("Cannot read student " + id, e);
+        }
+    }
+    
+    @Override
+    public List<Student> listStudents() {
+        try {
+            flush();
+            return readStudents(selectStudents);
+        } catch (SQLException e) {
+            throw new StorageException("Cannot list students", e);
+        }
+    }
+    
+    @Override
+    public void addCourse(Course course) {
+        try {
+            insertCourse.setString(1, fit(course.getCode(), 64, "Course code").toUpperCase(Locale.ROOT));
+            insertCourse.setString(2, course.getCode());
+            insertCourse.setString(3, fit(course.getTitle(), 255, "Title"));
+            insertCourse.setInt(4, course.getCredits());
+            insertCourse.setString(5, fit(course.getInstructor(), 255, "Instructor"));
+            insertCourse.setString(6, course.getSemester().name());
+            insertCourse.setString(7, fit(course.getDepartment(), 255, "Department"));
+            insertCourse.setBoolean(8, course.isActive());
+            insertCourse.setLong(9, course.getVersion());
+            insertCourse.setInt(10, course.getCapacity());
+            String prerequisites = String.join(",", course.getPrerequisites());
+            insertCourse.setString(11, fit(prerequisites, 1024, "Prerequisite list"));
+            queue(insertCourse);
+        } catch (SQLException e) {
+            throw new StorageException("Cannot add course " + course.getCode(), e);
+        }
+    }
+    
+    @Override
+    public void updateCourse(Course course) {
+        try {
+            updateCourse.setBoolean(1, course.isActive());
+            updateCourse.setLong(2, course.getVersion());
+            updateCourse.setString(3, course.getCode().toUpperCase(Locale.ROOT));
+            queue(updateCourse);
+        } catch (SQLException e) {
+            throw new StorageException("Cannot update course " + course.getCode(), e);
+        }
+    }
+    
+    @Override
+    public Course findCourse(String code) {
+        try {
+            flush();
+            selectCourse.setString(1, code.toUpperCase(Locale.ROOT));
+            List<Course> found = readCourses(selectCourse);
+            return found.isEmpty() ? null : found.get(0);
+        } catch (SQLException e) {
+            throw new StorageException("Cannot read course " + code, e);
+        }
+    }
+    
+    @Override
+    public List<Course> listCourses() {
+        try {
+            flush();
+            return readCourses(selectCourses);
+        } catch (SQLException e) {
+            throw new StorageException("Cannot list courses", e);
+        }
+    }
+    
+    @Override
+    public EnrollmentStore enrollments() { return enrollments; }
+    
+    @Override
+    public Collection<Object> changedSince(long version) {
+        try {
+            flush();
+            List<Object> changes = new ArrayList<>();
+            selectStudentsSince.setLong(1, version);
+            changes.addAll(readStudents(selectStudentsSince));
+            selectCoursesSince.setLong(1, version);
+            changes.addAll(readCourses(selectCoursesSince));
+            changes.addAll(enrollments.changedSince(version));
+            changes.sort(Comparator.comparingLong(RecordVersions::versionOf));
+            return changes;
+        } catch (SQLException e) {
+            throw new StorageException("Cannot read changes since version " + version, e);
+        }
+    }
+    
+    @Override
+    public void close() {
+        try {
+            flush();
+            connection.close();
+        } catch (SQLException e) {
+            throw new StorageException("Cannot close database", e);
+        }
+    }
+    
+    // Consecutive writes through the same statement share a batch. Switching
+    // statements executes the pending batch first, inside the open transaction,
+    // so writes reach the database in the order they were queued.
+    private void queue(PreparedStatement statement) throws SQLException {
+        if (batching != null && batching != statement) {
+            execute(false);
+        }
+        batching = statement;
+        statement.addBatch();
+        if (++pendingWrites >= batchSize) {
+            flush();
+        }
+    }
+    
+    private void flush() {
+        if (pendingWrites == 0) {
+            return;
+        }
+        execute(true);
+    }
+    
+    // A failed write rolls back every write since the last commit. It is
+    // reported as a write failure, whichever call happened to run the batch.
+    private void execute(boolean commit) {
+        try {
+            if (batching != null) {
+                batching.executeBatch();
+            }
+            if (commit) {
+                connection.commit();
+                pendingWrites = 0;
+            }
+        } catch (SQLException e) {
+            int lost = pendingWrites;
+            try {
+                if (batching != null) {
+                    batching.clearBatch();
+                }
+                connection.rollback();
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            pendingWrites = 0;
+            throw new StorageException(lost == 1 ? "Write failed: " + e.getMessage()
+                : "Write failed, " + lost + " queued writes were rolled back: " + e.getMessage(), e);
+        } finally {
+            batching = null;
+        }
+    }
+    
+    // Rejects a value its column cannot hold before it is queued
+    private static String fit(String value, int length, String field) {
+        if (value != null && value.length() > length) {
+            throw new StorageException(field + " is limited to " + length + " characters", null);
+        }
+        return value;
+    }
+    
+    // Student rows are joined with their course codes, one row per enrollment
+    private List<Student> readStudents(PreparedStatement query) throws SQLException {
+        Map<String, Student> students = new LinkedHashMap<>();
+        try (ResultSet rs = query.executeQuery()) {
+            while (rs.next()) {
+                Student student = students.computeIfAbsent(rs.getString(1), id -> {
+                    try {
+                        return new Student(id, rs.getString(2), rs.getString(3), rs.getString(4),
+                            rs.getDate(5).toLocalDate(), rs.getBoolean(6), List.of(), rs.getLong(7));
+                    } catch (SQLException e) {
+                        throw new StorageException("Cannot read student " + id, e);
+                    }
+                });
+                String courseCode = rs.getString(8);
+                // A retaken course joins once per attempt
+                if (courseCode != null && !student.getEnrolledCourses().contains(courseCode)) {
+                    student.getEnrolledCourses().add(courseCode);
+                }
+            }
+        }
+        return new ArrayList<>(students.values());
+    }
+    
+    private List<Course> readCourses(PreparedStatement query) throws SQLException {
+        List<Course> courses = new ArrayList<>();
+        try (ResultSet rs = query.executeQuery()) {
+            while (rs.next()) {
+                courses.add(new Course.Builder()
+                    .code(rs.getString(1))
+                    .title(rs.getString(2))
+                    .credits(rs.getInt(3))
+                    .instructor(rs.getString(4))
+                    .semester(Semester.valueOf(rs.getString(5)))
+                    .department(rs.getString(6))
+                    .active(rs.getBoolean(7))
+                    .version(rs.getLong(8))
+                    .capacity(rs.getInt(9))
+                    .prerequisites(splitCodes(rs.getString(10)))
+                    .build());
+            }
+        }
+        return courses;
+    }
+    
+    private static String[] splitCodes(String codes) {
+        return codes == null || codes.isEmpty() ? new String[0] : codes.split(",");
+    }
+    
+    private List<Enrollment> readEnrollments(PreparedStatement query) throws SQLException {
+        return readEnrollments(query, false);
+    }
+    
+    private List<Enrollment> readEnrollments(PreparedStatement query, boolean dropped) throws SQLException {
+        List<Enrollment> enrollments = new ArrayList<>();
+        try (ResultSet rs = query.executeQuery()) {
+            while (rs.next()) {
+                enrollments.add(new Enrollment(rs.getString(1), rs.getString(2),
+                    Semester.valueOf(rs.getString(3)), rs.getDate(4).toLocalDate(),
+                    rs.getDouble(5), Grade.valueOf(rs.getString(6)), rs.getLong(7), dropped));
+            }
+        }
+        return enrollments;
+    }
+    
+    // Enrollment half of the JDBC backend, sharing the store's connection and batches
+    private class JdbcEnrollmentStore implements EnrollmentStore {
+        @Override
+        public void add(Enrollment enrollment) throws TermClosedException {
+            Term term = enrollment.getTerm();
+            if (closedTerms.contains(term)) {
+                throw new TermClosedException("Term " + term + " is closed for enrollment");
+            }
+            try {
+                String courseCode = fit(enrollment.getCourseCode(), 64, "Course code");
+                insertEnrollment.setString(1, fit(enrollment.getStudentId(), 64, "Student ID"));
+                insertEnrollment.setString(2, courseCode.toUpperCase(Locale.ROOT));
+                insertEnrollment.setString(3, enrollment.getCourseCode());
+                insertEnrollment.setString(4, enrollment.getSemester().name());
+                insertEnrollment.setInt(5, term.getYear());
+                insertEnrollment.setDate(6, Date.valueOf(enrollment.getEnrollmentDate()));
+                insertEnrollment.setDouble(7, enrollment.getMarks());
+                insertEnrollment.setString(8, enrollment.getGrade().name());
+                insertEnrollment.setLong(9, enrollment.getVersion());
+                queue(insertEnrollment);
+            } catch (SQLException e) {
+                throw new StorageException("Cannot add enrollment", e);
+            }
+        }
+        
+        @Override
+        public boolean remove(String studentId, String courseCode) throws TermClosedException {
+            Enrollment enrollment = find(studentId, courseCode);
+            if (enrollment == null) {
+                return false;
+            }
+            if (closedTerms.contains(enrollment.getTerm())) {
+                throw new TermClosedException("Term " + enrollment.getTerm() + " is closed");
+            }
+            try {
+                enrollment.markDropped();
+                insertDrop.setLong(1, enrollment.getVersion());
+                insertDrop.setString(2, enrollment.getStudentId());
+                insertDrop.setString(3, enrollment.getCourseCode().toUpperCase(Locale.ROOT));
+                insertDrop.setString(4, enrollment.getCourseCode());
+                insertDrop.setString(5, enrollment.getSemester().name());
+                insertDrop.setInt(6, enrollment.getTerm().getYear());
+                insertDrop.setDate(7, Date.valueOf(enrollment.getEnrollmentDate()));
+                insertDrop.setDouble(8, enrollment.getMarks());
+                insertDrop.setString(9, enrollment.getGrade().name());
+                queue(insertDrop);
+                deleteEnrollment.setString(1, studentId);
+                deleteEnrollment.setString(2, courseCode.toUpperCase(Locale.ROOT));
+                deleteEnrollment.setInt(3, enrollment.getTerm().getYear());
+                deleteEnrollment.setString(4, enrollment.getSemester().name());
+                queue(deleteEnrollment);
+                return true;
+            } catch (SQLException e) {
+                throw new StorageException("Cannot remove enrollment", e);
+            }
+        }
+        
+        @Override
+        public void update(Enrollment enrollment) {
+            try {
+                updateEnrollment.setDouble(1, enrollment.getMarks());
+                updateEnrollment.setString(2, enrollment.getGrade().name());
+                updateEnrollment.setLong(3, enrollment.getVersion());
+                updateEnrollment.setString(4, enrollment.getStudentId());
+                updateEnrollment.setString(5, enrollment.getCourseCode().toUpperCase(Locale.ROOT));
+                updateEnrollment.setInt(6, enrollment.getTerm().getYear());
+                updateEnrollment.setString(7, enrollment.getSemester().name());
+                queue(updateEnrollment);
+            } catch (SQLException e) {
+                throw new StorageException("Cannot update enrollment", e);
+            }
+        }
+        
+        @Override
+        public Enrollment find(String studentId, String courseCode) {
+            try {
+                flush();
+                selectEnrollment.setString(1, studentId);
+                selectEnrollment.setString(2, courseCode.toUpperCase(Locale.ROOT));
+                List<Enrollment> found = readEnrollments(selectEnrollment);
+                return found.isEmpty() ? null : found.get(0);
+            } catch (SQLException e) {
+                throw new StorageException("Cannot read enrollment", e);
+            }
+        }
+        
+        @Override
+        public List<Enrollment> forStudent(String studentId) {
+            try {
+                flush();
+                selectStudentEnrollments.setString(1, studentId);
+                return readEnrollments(selectStudentEnrollments);
+            } catch (SQLException e) {
+                throw new StorageException("Cannot read enrollments of " + studentId, e);
+            }
+        }
+        
+        @Override
+        public List<Enrollment> forTerm(Term term) {
+            try {
+                flush();
+                selectTermEnrollments.setInt(1, term.getYear());
+                selectTermEnrollments.setString(2, term.getSemester().name());
+                return readEnrollments(selectTermEnrollments);
+            } catch (SQLException e) {
+                throw new StorageException("Cannot read enrollments of " + term, e);
+            }
+        }
+        
+        @Override
+        public List<Enrollment> between(LocalDate from, LocalDate to) {
+            try {
+                flush();
+                selectEnrollmentsBetween.setDate(1, Date.valueOf(from));
+                selectEnrollmentsBetween.setDate(2, Date.valueOf(to));
+                return readEnrollments(selectEnrollmentsBetween);
+            } catch (SQLException e) {
+                throw new StorageException("Cannot read enrollments between " + from + " and " + to, e);
+            }
+        }
+        
+        @Override
+        public int countOpen(String courseCode, Term term) {
+            if (closedTerms.contains(term)) {
+                return 0;
+            }
+            try {
+                flush();
+                countOpenEnrollments.setString(1, courseCode.toUpperCase(Locale.ROOT));
+                countOpenEnrollments.setInt(2, term.getYear());
+                countOpenEnrollments.setString(3, term.getSemester().name());
+                try (ResultSet rs = countOpenEnrollments.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            } catch (SQLException e) {
+                throw new StorageException("Cannot count enrollments of " + courseCode, e);
+            }
+        }
+        
+        @Override
+        public boolean isClosed(Term term) {
+            return closedTerms.contains(term);
+        }
+        
+        // Closed rows stay in the indexed table; the term is only marked read-only
+        @Override
+        public int closeTerm(Term term) {
+            if (closedTerms.contains(term)) {
+                return 0;
+            }
+            try {
+                flush();
+                insertClosedTerm.setInt(1, term.getYear());
+                insertClosedTerm.setString(2, term.getSemester().name());
+                insertClosedTerm.executeUpdate();
+                connection.commit();
+                closedTerms.add(term);
+                return forTerm(term).size();
+            } catch (SQLException e) {
+                throw new StorageException("Cannot close term " + term, e);
+            }
+        }
+        
+        // Live rows and drop tombstones, merged in version order
+        @Override
+        public List<Enrollment> changedSince(long version) {
+            try {
+                flush();
+                selectEnrollmentsSince.setLong(1, version);
+                List<Enrollment> changes = readEnrollments(selectEnrollmentsSince);
+                selectDropsSince.setLong(1, version);
+                changes.addAll(readEnrollments(selectDropsSince, true));
+                changes.sort(Comparator.comparingLong(Enrollment::getVersion));
+                return changes;
+            } catch (SQLException e) {
+                throw new StorageException("Cannot read enrollments since version " + version, e);
+            }
+        }
+    }
+}
+
+// Immutable snapshot of the prerequisite DAG. The transitive closure is
+// precomputed as one BitSet per course, so an eligibility check is a copy of
+// that set minus the courses a student has passed.
+final class PrerequisiteGraph {
+    private final Map<String, Integer> index = new HashMap<>();
+    private final String[] codes;
+    private final int[] credits;
+    private final BitSet[] closure;
+    
+    // Prerequisites naming unknown courses are ignored; a cycle is rejected
+    PrerequisiteGraph(Collection<Course> courses) {
+        int n = courses.size();
+        this.codes = new String[n];
+        this.credits = new int[n];
+        this.closure = new BitSet[n];
+        
+        List<Course> ordered = new ArrayList<>(courses);
+        for (int i = 0; i < n; i++) {
+            Course course = ordered.get(i);
+            codes[i] = course.getCode();
+            credits[i] = course.getCredits();
+            index.put(course.getCode().toUpperCase(Locale.ROOT), i);
+        }
+        
+        int[][] direct = new int[n][];
+        for (int i = 0; i < n; i++) {
+            direct[i] = ordered.get(i).getPrerequisites().stream()
+                .map(code -> index.get(code.toUpperCase(Locale.ROOT)))
+                .filter(Objects::nonNull)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        }
+        
+        boolean[] visiting = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            computeClosure(i, direct, visiting);
+        }
+    }
+    
+    private BitSet computeClosure(int course, int[][] direct, boolean[] visiting) {
+        if (closure[course] != null) {
+            return closure[course];
+        }
+        if (visiting[course]) {
+            throw new IllegalArgumentException("Prerequisite cycle through " + codes[course]);
+        }
+        visiting[course] = true;
+        BitSet required = new BitSet(codes.length);
+        for (int prerequisite : direct[course]) {
+            required.set(prerequisite);
+            required.or(computeClosure(prerequisite, direct, visiting));
+        }
+        visiting[course] = false;
+        closure[course] = required;
+        return required;
+    }
+    
+    // Every direct and indirect prerequisite of a course not in the passed set
+    public List<String> missing(String courseCode, Collection<String> passedCodes) {
+        Integer course = index.get(courseCode.toUpperCase(Locale.ROOT));
+        if (course == null) {
+            return List.of();
+        }
+        BitSet outstanding = (BitSet) closure[course].clone();
+        for (String passed : passedCodes) {
+            Integer i = index.get(passed.toUpperCase(Locale.ROOT));
+            if (i != null) {
+                outstanding.clear(i);
+            }
+        }
+        List<String> missing = new ArrayList<>();
+        for (int i = outstanding.nextSetBit(0); i >= 0; i = outstanding.nextSetBit(i + 1)) {
+            missing.add(codes[i]);
+        }
+        return missing;
+    }
+    
+    public int credits(String courseCode) {
+        Integer course = index.get(courseCode.toUpperCase(Locale.ROOT));
+        return course == null ? 0 : credits[course];
+    }
+}
+
+// Registration rules on top of a RecordStore: prerequisite checks, seat caps
+// and per-course priority waitlists. Each course's seat count and waitlist are
+// guarded by that course's lock, so adds and drops for different courses run
+// concurrently; calls into the store, which is not thread-safe, are
+// serialized on storeLock. Locks are always taken course first, store second.
+// Waitlists are held in memory only and start empty on every run, whichever
+// storage backend is in use. Seats are counted for the course's offering in
+// the current year only; enrollments from earlier years never take them.
+class RegistrationEngine {
+    // Students with more passed credits go first, then first come first served
+    private static final Comparator<WaitlistEntry> WAITLIST_ORDER =
+        Comparator.comparingInt((WaitlistEntry e) -> -e.passedCredits)
+            .thenComparingLong(e -> e.arrival);
+    
+    private final RecordStore store;
+    private final Object storeLock = new Object();
+    private final ConcurrentHashMap<String, CourseSeats> seats = new ConcurrentHashMap<>();
+    private final AtomicLong arrivals = new AtomicLong();
+    private volatile PrerequisiteGraph graph;
+    
+    public RegistrationEngine(RecordStore store) {
+        this.store = store;
+        this.graph = new PrerequisiteGraph(store.listCourses());
+    }
+    
+    // Rebuilds the prerequisite graph after a course is added
+    public void refreshCourses() {
+        synchronized (storeLock) {
+            graph = new PrerequisiteGraph(store.listCourses());
+        }
+    }
+    
+    public List<String> missingPrerequisites(String studentId, String courseCode) {
+        return graph.missing(courseCode, passedCourses(studentId));
+    }
+    
+    // Takes a seat, or joins the waitlist when the course is full
+    public SeatStatus register(Student student, Course course)
+            throws DuplicateEnrollmentException, PrerequisiteNotMetException, TermClosedException {
+        List<String> missing = missingPrerequisites(student.getId(), course.getCode());
+        if (!missing.isEmpty()) {
+            throw new PrerequisiteNotMetException("Missing prerequisites: " + String.join(", ", missing));
+        }
+        
+        CourseSeats courseSeats = seatsFor(course);
+        courseSeats.lock.lock();
+        try {
+            Term term = currentTerm(course);
+            synchronized (storeLock) {
+                if (store.enrollments().isClosed(term)) {
+                    throw new TermClosedException("Term " + term + " is closed for enrollment");
+                }
+            }
+            if (isEnrolled(student.getId(), course)) {
+                throw new DuplicateEnrollmentException("Student is already enrolled in this course");
+            }
+            if (courseSeats.isWaitlisted(student.getId())) {
+                throw new DuplicateEnrollmentException("Student is already on the waitlist for this course");
+            }
+            // Waitlisted students keep priority over newcomers for a free seat
+            if (courseSeats.hasFreeSeat() && courseSeats.waitlist.isEmpty()) {
+                enroll(student, course);
+                courseSeats.taken++;
+                return SeatStatus.ENROLLED;
+            }
+            courseSeats.waitlist.add(new WaitlistEntry(student.getId(),
+                passedCredits(student.getId()), arrivals.incrementAndGet()));
+            return SeatStatus.WAITLISTED;
+        } finally {
+            courseSeats.lock.unlock();
+        }
+    }
+    
+    // Closes a term and re-derives every cached seat count from the store. Courses
+    // running in that term can no longer take anyone, so their waitlists are
+    // cleared; any other course with a free seat promotes from its waitlist.
+    // Promoted students are added to promoted, removed ones to removedFromWaitlist.
+    public int closeTerm(Term term, List<String> promoted, List<String> removedFromWaitlist) {
+        int archived;
+        synchronized (storeLock) {
+            archived = store.enrollments().closeTerm(term);
+        }
+        for (CourseSeats courseSeats : seats.values()) {
+            Course course = courseSeats.course;
+            courseSeats.lock.lock();
+            try {
+                synchronized (storeLock) {
+                    courseSeats.taken = store.enrollments().countOpen(course.getCode(), currentTerm(course));
+                }
+                if (currentTerm(course).equals(term)) {
+                    for (WaitlistEntry entry : courseSeats.waitlist) {
+                        removedFromWaitlist.add(entry.studentId + " (" + course.getCode() + ": term closed)");
+                    }
+                    courseSeats.waitlist.clear();
+                } else {
+                    for (String id : promote(courseSeats, course, removedFromWaitlist)) {
+                        promoted.add(id + " (" + course.getCode() + ")");
+                    }
+                }
+            } finally {
+                courseSeats.lock.unlock();
+            }
+        }
+        return archived;
+    }
+    
+    // Frees the student's seat and returns the students promoted into it.
+    // Waitlisted students who are no longer eligible lose their place; they
+    // are added to skipped together with the reason.
+    public List<String> drop(String studentId, Course course, List<String> skipped) throws TermClosedException {
+        CourseSeats courseSeats = seatsFor(course);
+        courseSeats.lock.lock();
+        try {
+            synchronized (storeLock) {
+                if (!store.enrollments().remove(studentId, course.getCode())) {
+                    return List.of();
+                }
+                Student student = store.findStudent(studentId);
+                if (student != null) {
+                    student.dropCourse(course.getCode());
+                }
+            }
+            courseSeats.taken--;
+            return promote(courseSeats, course, skipped);
+        } finally {
+            courseSeats.lock.unlock();
+        }
+    }
+    
+    public boolean leaveWaitlist(String studentId, Course course) {
+        CourseSeats courseSeats = seatsFor(course);
+        courseSeats.lock.lock();
+        try {
+            return courseSeats.waitlist.removeIf(e -> e.studentId.equals(studentId));
+        } finally {
+            courseSeats.lock.unlock();
+        }
+    }
+    
+    public boolean isWaitlisted(String studentId, Course course) {
+        CourseSeats courseSeats = seatsFor(course);
+        courseSeats.lock.lock();
+        try {
+            return courseSeats.isWaitlisted(studentId);
+        } finally {
+            courseSeats.lock.unlock();
+        }
+    }
+    
+    // Waitlisted student IDs in promotion order
+    public List<String> waitlist(Course course) {
+        CourseSeats courseSeats = seatsFor(course);
+        courseSeats.lock.lock();
+        try {
+            List<WaitlistEntry> entries = new ArrayList<>(courseSeats.waitlist);
+            entries.sort(WAITLIST_ORDER);
+            List<String> ids = new ArrayList<>();
+            for (WaitlistEntry entry : entries) {
+                ids.add(entry.studentId);
+            }
+            return ids;
+        } finally {
+            courseSeats.lock.unlock();
+        }
+    }
+    
+    public int seatsTaken(Course course) {
+        CourseSeats courseSeats = seatsFor(course);
+        courseSeats.lock.lock();
+        try {
+            return courseSeats.taken;
+        } finally {
+            courseSeats.lock.unlock();
+        }
+    }
+    
+    // Fills free seats from the head of the waitlist, skipping students who are
+    // no longer eligible. Called with the course lock held.
+    private List<String> promote(CourseSeats courseSeats, Course course, List<String> skipped) {
+        List<String> promoted = new ArrayList<>();
+        while (courseSeats.hasFreeSeat() && !courseSeats.waitlist.isEmpty()) {
+            WaitlistEntry next = courseSeats.waitlist.poll();
+            Student student;
+            synchronized (storeLock) {
+                student = store.findStudent(next.studentId);
+            }
+            if (student == null) {
+                skipped.add(skipEntry(next, course, "student no longer exists"));
+                continue;
+            }
+            if (isEnrolled(next.studentId, course)) {
+                skipped.add(skipEntry(next, course, "already enrolled"));
+                continue;
+            }
+            List<String> missing = missingPrerequisites(next.studentId, course.getCode());
+            if (!missing.isEmpty()) {
+                skipped.add(skipEntry(next, course, "missing prerequisites: " + String.join(", ", missing)));
+                continue;
+            }
+            try {
+                enroll(student, course);
+            } catch (StorageException e) {
+                // The store rejected this student (e.g. an over-long ID); try the next one
+                skipped.add(skipEntry(next, course, e.getMessage()));
+                continue;
+            } catch (TermClosedException e) {
+                courseSeats.waitlist.add(next);
+                break;
+            }
+            courseSeats.taken++;
+            promoted.add(next.studentId);
+        }
+        return promoted;
+    }
+    
+    private static String skipEntry(WaitlistEntry entry, Course course, String reason) {
+        return entry.studentId + " (" + course.getCode() + ": " + reason + ")";
+    }
+    
+    private void enroll(Student student, Course course) throws TermClosedException {
+        synchronized (storeLock) {
+            store.enrollments().add(new Enrollment(student.getId(), course.getCode(), course.getSemester()));
+            // A retake keeps the course listed once
+            if (!student.getEnrolledCourses().contains(course.getCode())) {
+                student.enrollInCourse(course.getCode());
+            }
+        }
+    }
+    
+    // Only the current offering counts; an attempt in an earlier term may be retaken
+    private boolean isEnrolled(String studentId, Course course) {
+        synchronized (storeLock) {
+            Enrollment latest = store.enrollments().find(studentId, course.getCode());
+            return latest != null && latest.getTerm().equals(currentTerm(course));
+        }
+    }
+    
+    // Courses with a passing grade (D or better)
+    private List<String> passedCourses(String studentId) {
+        List<String> passed = new ArrayList<>();
+        synchronized (storeLock) {
+            for (Enrollment e : store.enrollments().forStudent(studentId)) {
+                if (e.getGrade() != Grade.F) {
+                    passed.add(e.getCourseCode());
+                }
+            }
+        }
+        return passed;
+    }
+    
+    private int passedCredits(String studentId) {
+        PrerequisiteGraph current = graph;
+        int total = 0;
+        for (String code : passedCourses(studentId)) {
+            total += current.credits(code);
+        }
+        return total;
+    }
+    
+    // New enrollments are dated today, so a course registers into this year's offering
+    private static Term currentTerm(Course course) {
+        return new Term(LocalDate.now().getYear(), course.getSemester());
+    }
+    
+    // Seat counts start from the enrollments already stored for open terms
+    private CourseSeats seatsFor(Course course) {
+        return seats.computeIfAbsent(course.getCode().toUpperCase(Locale.ROOT), key -> {
+            synchronized (storeLock) {
+                int taken = store.enrollments().countOpen(course.getCode(), currentTerm(course));
+                return new CourseSeats(course, taken);
+            }
+        });
+    }
+    
+    private static final class CourseSeats {
+        final ReentrantLock lock = new ReentrantLock();
+        final PriorityQueue<WaitlistEntry> waitlist = new PriorityQueue<>(WAITLIST_ORDER);
+        final Course course;
+        int taken;
+        
+        CourseSeats(Course course, int taken) {
+            this.course = course;
+            this.taken = taken;
+        }
+        
+        boolean hasFreeSeat() {
+            return course.getCapacity() <= 0 || taken < course.getCapacity();
+        }
+        
+        boolean isWaitlisted(String studentId) {
+            return waitlist.stream().anyMatch(e -> e.studentId.equals(studentId));
+        }
+    }
+    
+    private static final class WaitlistEntry {
+        final String studentId;
+        final int passedCredits;
+        final long arrival;
+        
+        WaitlistEntry(String studentId, int passedCredits, long arrival) {
+            this.studentId = studentId;
+            this.passedCredits = passedCredits;
+            this.arrival = arrival;
+        }
+    }
+}
+
+// Rendering layer for console listings. Each row is formatted into a reused
+// StringBuilder, copied into a reused char buffer and written through one
+// BufferedWriter; nothing reaches the console until flush() is called, so
+// callers flush before printing anything else through System.out.
+class ConsoleRenderer {
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder(128);
+    private char[] chars = new char[128];
+    
+    public ConsoleRenderer(OutputStream stream, Charset charset) {
+        this.out = new BufferedWriter(new OutputStreamWriter(stream, charset), 16 * 1024);
+    }
+    
+    // Encodes exactly as System.out does, so the output stays byte-for-byte identical
+    public static ConsoleRenderer forStdout() {
+        return new ConsoleRenderer(System.out, stdoutCharset());
+    }
+    
+    private static Charset stdoutCharset() {
+        for (String property : new String[] { "stdout.encoding", "sun.stdout.encoding" }) {
+            String name = System.getProperty(property);
+            if (name != null && Charset.isSupported(name)) {
+                return Charset.forName(name);
+            }
+        }
+        return Charset.defaultCharset();
+    }
+    
+    public void line(String text) {
+        line.setLength(0);
+        line.append(text);
+        emit();
+    }
+    
+    public void student(Student student) {
+        line.setLength(0);
+        line.append("ID: ").append(student.getId())
+            .append(" | Reg No: ").append(student.getRegNo())
+            .append(" | Name: ").append(student.getFullName());
+        emit();
+    }
+    
+    // Same text as Course.toString()
+    public void course(Course course) {
+        line.setLength(0);
+        line.append(course.getCode()).append(" - ").append(course.getTitle())
+            .append(" (").append(course.getCredits()).append(" credits)");
+        emit();
+    }
+    
+    public void enrollment(Enrollment enrollment) {
+        line.setLength(0);
+        line.append("Course: ").append(enrollment.getCourseCode())
+            .append(" | Enrollment Date: ");
+        appendDate(enrollment.getEnrollmentDate());
+        line.append(" | Marks: ").append(enrollment.getMarks())
+            .append(" | Grade: ").append(enrollment.getGrade().name());
+        emit();
+    }
+    
+    public void transcriptRow(Enrollment enrollment) {
+        Grade grade = enrollment.getGrade();
+        line.setLength(0);
+        line.append(enrollment.getCourseCode()).append("\t\t")
+            .append(enrollment.getMarks()).append('\t')
+            .append(grade.name()).append('\t')
+            .append(grade.getPoints());
+        emit();
+    }
+    
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // Matches LocalDate.toString() for four-digit years without creating a String
+    private void appendDate(LocalDate date) {
+        int year = date.getYear();
+        if (year < 1000 || year > 9999) {
+            line.append(date);
+            return;
+        }
+        line.append(year).append('-');
+        appendTwoDigits(date.getMonthValue());
+        line.append('-');
+        appendTwoDigits(date.getDayOfMonth());
+    }
+    
+    private void appendTwoDigits(int value) {
+        if (value < 10) {
+            line.append('0');
+        }
+        line.append(value);
+    }
+    
+    private void emit() {
+        line.append(LINE_SEPARATOR);
+        int length = line.length();
+        if (length > chars.length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        line.getChars(0, length, chars, 0);
+        try {
+            out.write(chars, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
+
+// Singleton pattern for application configuration
+class AppConfig {
+    private static AppConfig instance;
+    private String dataPath;
+    private String storageBackend;
+    private String jdbcUrl;
+    private String benchmarkJdbcUrl;
+    
+    private AppConfig() {
+        this.dataPath = "./data/";
+        // Backend is chosen with -Dccrm.storage=memory|offheap|jdbc
+        this.storageBackend = System.getProperty("ccrm.storage", "memory");
+        this.jdbcUrl = System.getProperty("ccrm.jdbc.url", "jdbc:h2:file:" + dataPath + "ccrm");
+        // Unset means the store comparison creates a throwaway database per run
+        this.benchmarkJdbcUrl = System.getProperty("ccrm.bench.jdbc.url");
+    }
+    
+    public static AppConfig getInstance() {
+        if (instance == null) {
+            instance = new AppConfig();
+        }
+        return instance;
+    }
+    
+    public String getDataPath() { return dataPath; }
+    public String getStorageBackend() { return storageBackend; }
+    public String getJdbcUrl() { return jdbcUrl; }
+    public String getBenchmarkJdbcUrl() { return benchmarkJdbcUrl; }
+    
+    public RecordStore openRecordStore() {
+        switch (storageBackend.toLowerCase(Locale.ROOT)) {
+            case "memory":
+                return new InMemoryRecordStore();
+            case "offheap":
+                return new InMemoryRecordStore(new OffHeapEnrollmentStore());
+            case "jdbc":
+                return new JdbcRecordStore(jdbcUrl);
+            default:
+                throw new StorageException("Unknown storage backend: " + storageBackend, null);
+        }
+    }
+}
+
+// Singleton issuing monotonically increasing version stamps for record mutations.
+// The journal maps each record's latest version to the record, so the records
+// changed since a version are a tail view of the map rather than a full scan.
+class RecordVersions {
+    private static RecordVersions instance;
+    private final AtomicLong clock;
+    private final ConcurrentSkipListMap<Long, Object> journal;
+    private volatile boolean journalEnabled = true;
+    
+    private RecordVersions() {
+        this.clock = new AtomicLong();
+        this.journal = new ConcurrentSkipListMap<>();
+    }
+    
+    public static RecordVersions getInstance() {
+        if (instance == null) {
+            instance = new RecordVersions();
+        }
+        return instance;
+    }
+    
+    // Assigns the next version to a record, replacing its previous journal entry
+    public long stamp(Object record, long previousVersion) {
+        long version = clock.incrementAndGet();
+        if (!journalEnabled) {
+            return version;
+        }
+        if (previousVersion > 0) {
+            journal.remove(previousVersion, record);
+        }
+        journal.put(version, record);
+        return version;
+    }
+    
+    // Keeps versions monotonic across restarts of a persistent backend
+    public void advanceTo(long version) {
+        clock.accumulateAndGet(version, Math::max);
+    }
+    
+    // Persistent backends track changes themselves and switch the heap journal off
+    public void setJournalEnabled(boolean enabled) {
+        this.journalEnabled = enabled;
+        if (!enabled) {
+            journal.clear();
+        }
+    }
+    
+    // Drops a record whose changes are tracked by its own store
+    public void forget(long version, Object record) {
+        journal.remove(version, record);
+    }
+    
+    public long currentVersion() { return clock.get(); }
+    
+    public static long versionOf(Object record) {
+        if (record instanceof Person) return ((Person) record).getVersion();
+        if (record instanceof Course) return ((Course) record).getVersion();
+        return ((Enrollment) record).getVersion();
+    }
+    
+    public Collection<Object> changedSince(long version) {
+        return journal.tailMap(version, false).values();
+    }
+}
+
+// Writes the records changed since a version as CSV, one record per line
+class DeltaExporter {
+    private final RecordStore store;
+    
+    public DeltaExporter(RecordStore store) {
+        this.store = store;
+    }
     
-    // Setter
-    public void setActive(boolean active) { this.active = active; }
+    // Returns the checkpoint to pass to the next export
+    public long export(long sinceVersion, Writer out) throws IOException {
+        long checkpoint = sinceVersion;
+        out.write("type,version,fields\n");
+        for (Object record : store.changedSince(sinceVersion)) {
+            if (record instanceof Student) {
+                Student s = (Student) record;
+                checkpoint = Math.max(checkpoint, s.getVersion());
+                writeRow(out, "STUDENT", s.getVersion(), s.getId(), s.getRegNo(), s.getFullName(),
+                    s.getEmail(), s.isActive(), s.getEnrollmentDate());
+            } else if (record instanceof Course) {
+                Course c = (Course) record;
+                checkpoint = Math.max(checkpoint, c.getVersion());
+                writeRow(out, "COURSE", c.getVersion(), c.getCode(), c.getTitle(), c.getCredits(),
+                    c.getInstructor(), c.getSemester(), c.getDepartment(), c.isActive(),
+                    c.getCapacity(), String.join(";", c.getPrerequisites()));
+            } else if (record instanceof Enrollment && ((Enrollment) record).isDropped()) {
+                Enrollment e = (Enrollment) record;
+                checkpoint = Math.max(checkpoint, e.getVersion());
+                writeRow(out, "DROP", e.getVersion(), e.getStudentId(), e.getCourseCode(),
+                    e.getSemester(), e.getEnrollmentDate());
+            } else if (record instanceof Enrollment) {
+                Enrollment e = (Enrollment) record;
+                checkpoint = Math.max(checkpoint, e.getVersion());
+                writeRow(out, "ENROLLMENT", e.getVersion(), e.getStudentId(), e.getCourseCode(),
+                    e.getSemester(), e.getEnrollmentDate(), e.getMarks(), e.getGrade());
+            }
+        }
+        out.flush();
+        return checkpoint;
+    }
     
-    @Override
-    public String toString() {
-        return code + " - " + title + " (" + credits + " credits)";
+    private void writeRow(Writer out, String type, long version, Object... fields) throws IOException {
+        out.write(type);
+        out.write(',');
+        out.write(Long.toString(version));
+        for (Object field : fields) {
+            out.write(',');
+            out.write(escape(String.valueOf(field)));
+        }
+        out.write('\n');
+    }
+    
+    private static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
     }
 }
 
-// Enrollment class
-class Enrollment {
-    private String studentId;
-    private String courseCode;
-    private double marks;
-    private Grade grade;
-    private LocalDate enrollmentDate;
+// Runs the same add/grade/lookup workload against each storage backend
+class StoreWorkload {
+    private static final int COURSES = 20;
+    private static final int COURSES_PER_STUDENT = 5;
     
-    public Enrollment(String studentId, String courseCode) {
-        this.studentId = studentId;
-        this.courseCode = courseCode;
-        this.enrollmentDate = LocalDate.now();
-        this.marks = 0.0;
-        this.grade = Grade.F;
+    public static void compare(int studentCount) throws IOException {
+        AppConfig config = AppConfig.getInstance();
+        // Delta export is not part of the workload; keep the journal from pinning records across runs
+        RecordVersions.getInstance().setJournalEnabled(false);
+        try (RecordStore memory = new InMemoryRecordStore()) {
+            run("memory", memory, studentCount);
+        }
+        try (RecordStore offHeap = new InMemoryRecordStore(new OffHeapEnrollmentStore(studentCount * COURSES_PER_STUDENT))) {
+            run("offheap", offHeap, studentCount);
+        }
+        
+        // The JDBC run starts from an empty file database like the in-process stores,
+        // unless -Dccrm.bench.jdbc.url names one
+        String url = config.getBenchmarkJdbcUrl();
+        Path scratch = url == null ? Files.createTempDirectory("ccrm-bench") : null;
+        if (scratch != null) {
+            url = "jdbc:h2:file:" + scratch.toAbsolutePath().resolve("bench");
+        }
+        try (RecordStore jdbc = new JdbcRecordStore(url, JdbcRecordStore.BATCH_SIZE)) {
+            run("jdbc", jdbc, studentCount);
+        } finally {
+            if (scratch != null) {
+                try (Stream<Path> files = Files.list(scratch)) {
+                    for (Path file : files.toList()) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+                Files.deleteIfExists(scratch);
+            }
+        }
     }
     
-    public void setMarks(double marks) {
-        this.marks = marks;
-        // Determine grade based on marks
-        if (marks >= 90) this.grade = Grade.A;
-        else if (marks >= 80) this.grade = Grade.B;
-        else if (marks >= 70) this.grade = Grade.C;
-        else if (marks >= 60) this.grade = Grade.D;
-        else this.grade = Grade.F;
+    public static void run(String label, RecordStore store, int studentCount) {
+        // Unique prefix so repeated runs against a file database do not collide
+        String prefix = "W" + System.currentTimeMillis() + "-";
+        EnrollmentStore enrollments = store.enrollments();
+        
+        long gcBefore = gcMillis();
+        long start = System.nanoTime();
+        for (int c = 0; c < COURSES; c++) {
+            store.addCourse(new Course.Builder()
+                .code(prefix + "C" + c)
+                .title("Workload Course " + c)
+                .credits(3)
+                .instructor("Staff")
+                .semester(Semester.values()[c % Semester.values().length])
+                .department("Workload")
+                .build());
+        }
+        for (int i = 0; i < studentCount; i++) {
+            String id = prefix + "S" + i;
+            store.addStudent(new Student(id, "R" + i, "Student " + i, id + "@uni.edu"));
+            for (int k = 0; k < COURSES_PER_STUDENT; k++) {
+                int c = (i + k) % COURSES;
+                try {
+                    enrollments.add(new Enrollment(id, prefix + "C" + c, Semester.values()[c % Semester.values().length]));
+                } catch (TermClosedException e) {
+                    // Workload terms are never closed
+                }
+            }
+        }
+        long loaded = System.nanoTime();
+        
+        for (int i = 0; i < studentCount; i++) {
+            String id = prefix + "S" + i;
+            Enrollment enrollment = enrollments.find(id, prefix + "C" + (i % COURSES));
+            enrollment.setMarks(50 + i % 50);
+            enrollments.update(enrollment);
+        }
+        long graded = System.nanoTime();
+        
+        int rows = 0;
+        for (int i = 0; i < studentCount; i++) {
+            String id = prefix + "S" + i;
+            if (store.findStudent(id) != null) {
+                rows += enrollments.forStudent(id).size();
+            }
+        }
+        long queried = System.nanoTime();
+        long gcTime = gcMillis() - gcBefore;
+        
+        // Heap still held by the store's records once garbage is collected
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapMb = (runtime.totalMemory() - runtime.freeMemory()) >> 20;
+        
+        System.out.printf("%-7s students=%d enrollments=%d load=%dms grade=%dms lookup=%dms gc=%dms heap=%dMB%n",
+            label, studentCount, rows, (loaded - start) / 1_000_000,
+            (graded - loaded) / 1_000_000, (queried - graded) / 1_000_000,
+            gcTime, heapMb);
     }
     
-    // Getters
-    public String getStudentId() { return studentId; }
-    public String getCourseCode() { return courseCode; }
-    public double getMarks() { return marks; }
-    public Grade getGrade() { return grade; }
-    public LocalDate getEnrollmentDate() { return enrollmentDate; }
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+            .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+            .sum();
+    }
 }
 
-// Singleton pattern for application configuration
-class AppConfig {
-    private static AppConfig instance;
-    private String dataPath;
+// Renders the same enrollment listing with String concatenation and println
+// (the original path) and with ConsoleRenderer, reporting time and allocation.
+// Output goes to a temporary file so per-line flushes cost a real write call.
+class RenderWorkload {
+    public static void compare(int rows) throws IOException {
+        List<Enrollment> enrollments = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Enrollment enrollment = new Enrollment("S" + i, "CS" + (100 + i % 50), Semester.FALL);
+            enrollment.setMarks(i % 101);
+            enrollments.add(enrollment);
+        }
+        
+        Path sink = Files.createTempFile("ccrm-render", ".txt");
+        try (FileOutputStream file = new FileOutputStream(sink.toFile())) {
+            // Warm up both paths before measuring
+            for (int i = 0; i < 5; i++) {
+                concatenated(file, enrollments);
+                rendered(file, enrollments);
+            }
+            report("println", rows, () -> concatenated(file, enrollments));
+            report("renderer", rows, () -> rendered(file, enrollments));
+        } finally {
+            Files.deleteIfExists(sink);
+        }
+    }
     
-    private AppConfig() {
-        this.dataPath = "./data/";
+    // Buffered and auto-flushing like System.out
+    private static void concatenated(OutputStream sink, List<Enrollment> enrollments) {
+        PrintStream out = new PrintStream(new BufferedOutputStream(sink, 128), true);
+        enrollments.forEach(e -> {
+            out.println("Course: " + e.getCourseCode() + 
+                       " | Enrollment Date: " + e.getEnrollmentDate() +
+                       " | Marks: " + e.getMarks() +
+                       " | Grade: " + e.getGrade());
+        });
     }
     
-    public static AppConfig getInstance() {
-        if (instance == null) {
-            instance = new AppConfig();
+    private static void rendered(OutputStream sink, List<Enrollment> enrollments) {
+        ConsoleRenderer renderer = new ConsoleRenderer(sink, Charset.defaultCharset());
+        for (Enrollment e : enrollments) {
+            renderer.enrollment(e);
         }
-        return instance;
+        renderer.flush();
     }
     
-    public String getDataPath() { return dataPath; }
+    private static void report(String label, int rows, Runnable render) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        boolean measureAllocation = threads instanceof com.sun.management.ThreadMXBean;
+        
+        long allocatedBefore = measureAllocation
+            ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId) : 0;
+        long start = System.nanoTime();
+        render.run();
+        long elapsed = System.nanoTime() - start;
+        long allocated = measureAllocation
+            ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId) - allocatedBefore : -1;
+        
+        double perThousand = 1000.0 / rows;
+        System.out.printf("%-8s rows=%d time=%.3fms/1000 rows allocated=%dKB/1000 rows%n",
+            label, rows, elapsed / 1_000_000.0 * perThousand,
+            measureAllocation ? (long) (allocated * perThousand) >> 10 : -1);
+    }
 }
 
 // Custom exceptions
@@ -223,28 +2833,49 @@ class MaxCreditLimitExceededException extends Exception {
     }
 }
 
+class TermClosedException extends Exception {
+    public TermClosedException(String message) {
+        super(message);
+    }
+}
+
+class PrerequisiteNotMetException extends Exception {
+    public PrerequisiteNotMetException(String message) {
+        super(message);
+    }
+}
+
+class StorageException extends RuntimeException {
+    public StorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
+
 // Main application class
 public class CampusCourseRecordsManager {
-    private List<Student> students;
-    private List<Course> courses;
-    private List<Enrollment> enrollments;
+    private RecordStore store;
+    private EnrollmentStore enrollments;
     private AppConfig config;
     private Scanner scanner;
+    private ConsoleRenderer renderer;
+    private RegistrationEngine registration;
+    private long lastExportVersion;
     
     public CampusCourseRecordsManager() {
-        this.students = new ArrayList<>();
-        this.courses = new ArrayList<>();
-        this.enrollments = new ArrayList<>();
         this.config = AppConfig.getInstance();
+        this.store = config.openRecordStore();
+        this.enrollments = store.enrollments();
         this.scanner = new Scanner(System.in);
+        this.renderer = ConsoleRenderer.forStdout();
         
         // Add some sample data for testing
         initializeSampleData();
+        this.registration = new RegistrationEngine(store);
     }
     
     private void initializeSampleData() {
-        // Add sample courses
-        courses.add(new Course.Builder()
+        // Add sample courses (a persistent backend keeps them from earlier runs)
+        addSampleCourse(new Course.Builder()
             .code("CS101")
             .title("Introduction to Programming")
             .credits(3)
@@ -253,7 +2884,7 @@ public class CampusCourseRecordsManager {
             .department("Computer Science")
             .build());
             
-        courses.add(new Course.Builder()
+        addSampleCourse(new Course.Builder()
             .code("MATH201")
             .title("Calculus I")
             .credits(4)
@@ -262,7 +2893,7 @@ public class CampusCourseRecordsManager {
             .department("Mathematics")
             .build());
             
-        courses.add(new Course.Builder()
+        addSampleCourse(new Course.Builder()
             .code("PHY101")
             .title("Physics Fundamentals")
             .credits(3)
@@ -270,6 +2901,23 @@ public class CampusCourseRecordsManager {
             .semester(Semester.SPRING)
             .department("Physics")
             .build());
+            
+        addSampleCourse(new Course.Builder()
+            .code("CS201")
+            .title("Data Structures")
+            .credits(3)
+            .instructor("Dr. Smith")
+            .semester(Semester.FALL)
+            .department("Computer Science")
+            .capacity(2)
+            .prerequisites("CS101")
+            .build());
+    }
+    
+    private void addSampleCourse(Course course) {
+        if (store.findCourse(course.getCode()) == null) {
+            store.addCourse(course);
+        }
     }
     
     public void start() {
@@ -310,9 +2958,12 @@ public class CampusCourseRecordsManager {
             } catch (InputMismatchException e) {
                 System.out.println("Please enter a valid number!");
                 scanner.nextLine(); // Clear invalid input
+            } catch (StorageException e) {
+                System.out.println("Storage error: " + e.getMessage());
             }
         }
         scanner.close();
+        store.close();
     }
     
     private void displayMainMenu() {
@@ -368,8 +3019,7 @@ public class CampusCourseRecordsManager {
         String id = scanner.nextLine();
         
         // Check if student ID already exists
-        boolean idExists = students.stream()
-            .anyMatch(s -> s.getId().equals(id));
+        boolean idExists = store.findStudent(id) != null;
         if (idExists) {
             System.out.println("Student ID already exists!");
             return;
@@ -385,33 +3035,31 @@ public class CampusCourseRecordsManager {
         String email = scanner.nextLine();
         
         Student student = new Student(id, regNo, name, email);
-        students.add(student);
+        store.addStudent(student);
         System.out.println("Student added successfully!");
     }
     
     private void listStudents() {
         System.out.println("\n--- All Students ---");
+        List<Student> students = store.listStudents();
         if (students.isEmpty()) {
             System.out.println("No students found.");
             return;
         }
         
-        // Using Stream API for demonstration
-        students.stream()
-            .filter(Student::isActive)
-            .forEach(student -> {
-                System.out.println("ID: " + student.getId() + " | Reg No: " + student.getRegNo() + 
-                                 " | Name: " + student.getFullName());
-            });
+        for (Student student : students) {
+            if (student.isActive()) {
+                renderer.student(student);
+            }
+        }
+        renderer.flush();
     }
     
     private void viewStudentProfile() {
         System.out.print("Enter student ID: ");
         String id = scanner.nextLine();
         
-        students.stream()
-            .filter(s -> s.getId().equals(id))
-            .findFirst()
+        Optional.ofNullable(store.findStudent(id))
             .ifPresentOrElse(
                 Student::displayInfo,
                 () -> System.out.println("Student not found!")
@@ -422,25 +3070,26 @@ public class CampusCourseRecordsManager {
         System.out.print("Enter student ID to update: ");
         String id = scanner.nextLine();
         
-        for (Student student : students) {
-            if (student.getId().equals(id)) {
-                System.out.print("Enter new name (current: " + student.getFullName() + "): ");
-                String newName = scanner.nextLine();
-                if (!newName.isEmpty()) {
-                    student.setFullName(newName);
-                }
-                
-                System.out.print("Enter new email (current: " + student.getEmail() + "): ");
-                String newEmail = scanner.nextLine();
-                if (!newEmail.isEmpty()) {
-                    student.setEmail(newEmail);
-                }
-                
-                System.out.println("Student updated successfully!");
-                return;
-            }
+        Student student = store.findStudent(id);
+        if (student == null) {
+            System.out.println("Student not found!");
+            return;
+        }
+        
+        System.out.print("Enter new name (current: " + student.getFullName() + "): ");
+        String newName = scanner.nextLine();
+        if (!newName.isEmpty()) {
+            student.setFullName(newName);
         }
-        System.out.println("Student not found!");
+        
+        System.out.print("Enter new email (current: " + student.getEmail() + "): ");
+        String newEmail = scanner.nextLine();
+        if (!newEmail.isEmpty()) {
+            student.setEmail(newEmail);
+        }
+        
+        store.updateStudent(student);
+        System.out.println("Student updated successfully!");
     }
     
     private void manageCourses() {
@@ -484,9 +3133,8 @@ public class CampusCourseRecordsManager {
         System.out.print("Enter course code: ");
         String code = scanner.nextLine();
         
-        // Check if course code already exists using Stream API
-        boolean codeExists = courses.stream()
-            .anyMatch(c -> c.getCode().equalsIgnoreCase(code));
+        // Check if course code already exists
+        boolean codeExists = store.findCourse(code) != null;
         if (codeExists) {
             System.out.println("Course code already exists!");
             return;
@@ -517,6 +3165,24 @@ public class CampusCourseRecordsManager {
             semester = Semester.FALL;
         }
         
+        System.out.print("Enter capacity (0 for unlimited): ");
+        int capacity = scanner.nextInt();
+        scanner.nextLine();
+        
+        System.out.print("Enter prerequisite course codes (comma-separated, blank for none): ");
+        String prerequisiteInput = scanner.nextLine().trim();
+        List<String> prerequisites = new ArrayList<>();
+        if (!prerequisiteInput.isEmpty()) {
+            for (String prerequisiteCode : prerequisiteInput.split(",")) {
+                Course prerequisite = store.findCourse(prerequisiteCode.trim());
+                if (prerequisite == null) {
+                    System.out.println("Prerequisite " + prerequisiteCode.trim() + " not found!");
+                    return;
+                }
+                prerequisites.add(prerequisite.getCode());
+            }
+        }
+        
         Course course = new Course.Builder()
             .code(code)
             .title(title)
@@ -524,24 +3190,29 @@ public class CampusCourseRecordsManager {
             .instructor(instructor)
             .semester(semester)
             .department(department)
+            .capacity(capacity)
+            .prerequisites(prerequisites.toArray(new String[0]))
             .build();
             
-        courses.add(course);
+        store.addCourse(course);
+        registration.refreshCourses();
         System.out.println("Course added successfully!");
     }
     
     private void listCourses() {
         System.out.println("\n--- All Courses ---");
+        List<Course> courses = store.listCourses();
         if (courses.isEmpty()) {
             System.out.println("No courses found.");
             return;
         }
         
-        courses.stream()
-            .filter(Course::isActive)
-            .forEach(course -> {
-                System.out.println(course.toString());
-            });
+        for (Course course : courses) {
+            if (course.isActive()) {
+                renderer.course(course);
+            }
+        }
+        renderer.flush();
     }
     
     private void searchCoursesByInstructor() {
@@ -549,7 +3220,7 @@ public class CampusCourseRecordsManager {
         String instructor = scanner.nextLine();
         
         System.out.println("\n--- Courses by " + instructor + " ---");
-        List<Course> instructorCourses = courses.stream()
+        List<Course> instructorCourses = store.listCourses().stream()
             .filter(c -> c.getInstructor().equalsIgnoreCase(instructor) && c.isActive())
             .toList();
             
@@ -565,7 +3236,7 @@ public class CampusCourseRecordsManager {
         String department = scanner.nextLine();
         
         System.out.println("\n--- Courses in " + department + " Department ---");
-        List<Course> deptCourses = courses.stream()
+        List<Course> deptCourses = store.listCourses().stream()
             .filter(c -> c.getDepartment().equalsIgnoreCase(department) && c.isActive())
             .toList();
             
@@ -582,7 +3253,10 @@ public class CampusCourseRecordsManager {
             System.out.println("\n=== ENROLLMENT MANAGEMENT ===");
             System.out.println("1. Enroll Student in Course");
             System.out.println("2. View Student's Enrollments");
-            System.out.println("3. Back to Main Menu");
+            System.out.println("3. Close Term");
+            System.out.println("4. Drop Enrollment");
+            System.out.println("5. View Course Waitlist");
+            System.out.println("6. Back to Main Menu");
             System.out.print("Choose an option: ");
             
             int choice = scanner.nextInt();
@@ -596,6 +3270,15 @@ public class CampusCourseRecordsManager {
                     viewStudentEnrollments();
                     break;
                 case 3:
+                    closeTerm();
+                    break;
+                case 4:
+                    dropEnrollment();
+                    break;
+                case 5:
+                    viewCourseWaitlist();
+                    break;
+                case 6:
                     back = true;
                     break;
                 default:
@@ -612,10 +3295,7 @@ public class CampusCourseRecordsManager {
         String courseCode = scanner.nextLine();
         
         // Check if student exists
-        Student student = students.stream()
-            .filter(s -> s.getId().equals(studentId))
-            .findFirst()
-            .orElse(null);
+        Student student = store.findStudent(studentId);
             
         if (student == null) {
             System.out.println("Student not found!");
@@ -623,39 +3303,100 @@ public class CampusCourseRecordsManager {
         }
         
         // Check if course exists
-        Course course = courses.stream()
-            .filter(c -> c.getCode().equalsIgnoreCase(courseCode))
-            .findFirst()
-            .orElse(null);
+        Course course = store.findCourse(courseCode);
             
         if (course == null) {
             System.out.println("Course not found!");
             return;
         }
         
-        // Check if already enrolled
-        boolean alreadyEnrolled = enrollments.stream()
-            .anyMatch(e -> e.getStudentId().equals(studentId) && 
-                          e.getCourseCode().equalsIgnoreCase(courseCode));
-        
-        if (alreadyEnrolled) {
-            System.out.println("Student is already enrolled in this course!");
+        // Prerequisites, duplicates and seat limits are checked by the registration engine
+        SeatStatus status;
+        try {
+            status = registration.register(student, course);
+        } catch (DuplicateEnrollmentException | PrerequisiteNotMetException | TermClosedException e) {
+            System.out.println(e.getMessage() + "!");
             return;
         }
         
-        Enrollment enrollment = new Enrollment(studentId, courseCode);
-        enrollments.add(enrollment);
-        student.enrollInCourse(courseCode);
+        if (status == SeatStatus.WAITLISTED) {
+            System.out.println("Course is full. Student added to the waitlist at position " +
+                (registration.waitlist(course).indexOf(studentId) + 1) + ".");
+            return;
+        }
         System.out.println("Enrollment successful!");
     }
     
+    private void dropEnrollment() {
+        System.out.print("Enter student ID: ");
+        String studentId = scanner.nextLine();
+        
+        System.out.print("Enter course code: ");
+        String courseCode = scanner.nextLine();
+        
+        Course course = store.findCourse(courseCode);
+        if (course == null) {
+            System.out.println("Course not found!");
+            return;
+        }
+        
+        if (registration.leaveWaitlist(studentId, course)) {
+            System.out.println("Student removed from the waitlist.");
+            return;
+        }
+        
+        if (enrollments.find(studentId, courseCode) == null) {
+            System.out.println("Enrollment not found!");
+            return;
+        }
+        
+        List<String> promoted;
+        List<String> skipped = new ArrayList<>();
+        try {
+            promoted = registration.drop(studentId, course, skipped);
+        } catch (TermClosedException e) {
+            System.out.println(e.getMessage() + "! Enrollment can no longer be dropped.");
+            return;
+        }
+        
+        System.out.println("Enrollment dropped successfully!");
+        skipped.forEach(entry ->
+            System.out.println("Removed from waitlist: " + entry)
+        );
+        promoted.forEach(id -> 
+            System.out.println("Student " + id + " promoted from the waitlist.")
+        );
+    }
+    
+    private void viewCourseWaitlist() {
+        System.out.print("Enter course code: ");
+        String courseCode = scanner.nextLine();
+        
+        Course course = store.findCourse(courseCode);
+        if (course == null) {
+            System.out.println("Course not found!");
+            return;
+        }
+        
+        System.out.println("\n--- " + course.getCode() + " Seats and Waitlist ---");
+        System.out.println("Seats taken: " + registration.seatsTaken(course) + " / " +
+            (course.getCapacity() > 0 ? String.valueOf(course.getCapacity()) : "Unlimited"));
+        
+        List<String> waitlist = registration.waitlist(course);
+        if (waitlist.isEmpty()) {
+            System.out.println("Waitlist is empty.");
+            return;
+        }
+        for (int i = 0; i < waitlist.size(); i++) {
+            System.out.println((i + 1) + ". " + waitlist.get(i));
+        }
+    }
+    
     private void viewStudentEnrollments() {
         System.out.print("Enter student ID: ");
         String studentId = scanner.nextLine();
         
-        List<Enrollment> studentEnrollments = enrollments.stream()
-            .filter(e -> e.getStudentId().equals(studentId))
-            .toList();
+        List<Enrollment> studentEnrollments = enrollments.forStudent(studentId);
             
         if (studentEnrollments.isEmpty()) {
             System.out.println("No enrollments found for this student.");
@@ -663,12 +3404,50 @@ public class CampusCourseRecordsManager {
         }
         
         System.out.println("\n--- Enrollments ---");
-        studentEnrollments.forEach(e -> {
-            System.out.println("Course: " + e.getCourseCode() + 
-                             " | Enrollment Date: " + e.getEnrollmentDate() +
-                             " | Marks: " + e.getMarks() +
-                             " | Grade: " + e.getGrade());
-        });
+        for (Enrollment e : studentEnrollments) {
+            renderer.enrollment(e);
+        }
+        renderer.flush();
+    }
+    
+    private void closeTerm() {
+        Term term = readTerm();
+        if (term == null) {
+            return;
+        }
+        
+        if (enrollments.isClosed(term)) {
+            System.out.println("Term " + term + " is already closed.");
+            return;
+        }
+        
+        List<String> promoted = new ArrayList<>();
+        List<String> removedFromWaitlist = new ArrayList<>();
+        int archived = registration.closeTerm(term, promoted, removedFromWaitlist);
+        System.out.println("Term " + term + " closed. " + archived + " enrollments archived.");
+        removedFromWaitlist.forEach(entry -> 
+            System.out.println("Removed from waitlist: " + entry)
+        );
+        promoted.forEach(entry -> 
+            System.out.println("Promoted from the waitlist: " + entry)
+        );
+    }
+    
+    private Term readTerm() {
+        System.out.print("Enter year: ");
+        int year = scanner.nextInt();
+        scanner.nextLine();
+        
+        System.out.println("Available semesters: SPRING, SUMMER, FALL");
+        System.out.print("Enter semester: ");
+        String semesterStr = scanner.nextLine().toUpperCase();
+        
+        try {
+            return new Term(year, Semester.valueOf(semesterStr));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid semester!");
+            return null;
+        }
     }
     
     private void manageGrades() {
@@ -679,17 +3458,18 @@ public class CampusCourseRecordsManager {
         System.out.print("Enter course code: ");
         String courseCode = scanner.nextLine();
         
-        Enrollment enrollment = enrollments.stream()
-            .filter(e -> e.getStudentId().equals(studentId) && 
-                        e.getCourseCode().equalsIgnoreCase(courseCode))
-            .findFirst()
-            .orElse(null);
+        Enrollment enrollment = enrollments.find(studentId, courseCode);
             
         if (enrollment == null) {
             System.out.println("Enrollment not found!");
             return;
         }
         
+        if (enrollments.isClosed(enrollment.getTerm())) {
+            System.out.println("Term " + enrollment.getTerm() + " is closed! Grades can no longer be changed.");
+            return;
+        }
+        
         System.out.print("Enter marks (0-100): ");
         double marks = scanner.nextDouble();
         scanner.nextLine();
@@ -700,6 +3480,7 @@ public class CampusCourseRecordsManager {
         }
         
         enrollment.setMarks(marks);
+        enrollments.update(enrollment);
         System.out.println("Marks recorded successfully!");
         System.out.println("Grade assigned: " + enrollment.getGrade());
     }
@@ -708,6 +3489,9 @@ public class CampusCourseRecordsManager {
         System.out.println("\n=== REPORTS ===");
         System.out.println("1. Course Statistics");
         System.out.println("2. Student Transcript");
+        System.out.println("3. Term Grades");
+        System.out.println("4. Enrollments Between Dates");
+        System.out.println("5. Export Changes Since Version");
         System.out.print("Choose an option: ");
         
         int choice = scanner.nextInt();
@@ -720,6 +3504,15 @@ public class CampusCourseRecordsManager {
             case 2:
                 generateTranscript();
                 break;
+            case 3:
+                showTermGrades();
+                break;
+            case 4:
+                showEnrollmentsBetween();
+                break;
+            case 5:
+                exportChanges();
+                break;
             default:
                 System.out.println("Invalid choice!");
         }
@@ -727,6 +3520,7 @@ public class CampusCourseRecordsManager {
     
     private void showCourseStatistics() {
         System.out.println("\n--- Course Statistics ---");
+        List<Course> courses = store.listCourses();
         System.out.println("Total courses: " + courses.size());
         
         // Using Stream API for aggregation
@@ -746,10 +3540,7 @@ public class CampusCourseRecordsManager {
         System.out.print("Enter student ID: ");
         String studentId = scanner.nextLine();
         
-        Student student = students.stream()
-            .filter(s -> s.getId().equals(studentId))
-            .findFirst()
-            .orElse(null);
+        Student student = store.findStudent(studentId);
             
         if (student == null) {
             System.out.println("Student not found!");
@@ -759,37 +3550,131 @@ public class CampusCourseRecordsManager {
         System.out.println("\n=== TRANSCRIPT ===");
         student.displayInfo();
         
-        List<Enrollment> studentEnrollments = enrollments.stream()
-            .filter(e -> e.getStudentId().equals(studentId))
-            .toList();
+        List<Enrollment> studentEnrollments = enrollments.forStudent(studentId);
             
         if (studentEnrollments.isEmpty()) {
             System.out.println("No course enrollments found.");
             return;
         }
         
-        System.out.println("\nCourse Grades:");
-        System.out.println("Course Code\tMarks\tGrade\tGrade Points");
-        System.out.println("--------------------------------------------");
-        
-        studentEnrollments.forEach(e -> {
-            System.out.println(e.getCourseCode() + "\t\t" + 
-                             e.getMarks() + "\t" + 
-                             e.getGrade() + "\t" + 
-                             e.getGrade().getPoints());
-        });
+        renderer.line("\nCourse Grades:");
+        renderer.line("Course Code\tMarks\tGrade\tGrade Points");
+        renderer.line("--------------------------------------------");
         
-        // Calculate GPA
-        double totalPoints = studentEnrollments.stream()
-            .mapToDouble(e -> e.getGrade().getPoints())
-            .sum();
+        // Render rows and calculate GPA in one pass
+        double totalPoints = 0;
+        for (Enrollment e : studentEnrollments) {
+            renderer.transcriptRow(e);
+            totalPoints += e.getGrade().getPoints();
+        }
         double gpa = studentEnrollments.isEmpty() ? 0 : totalPoints / studentEnrollments.size();
         
-        System.out.println("--------------------------------------------");
+        renderer.line("--------------------------------------------");
+        renderer.flush();
         System.out.printf("GPA: %.2f%n", gpa);
     }
     
+    private void showTermGrades() {
+        Term term = readTerm();
+        if (term == null) {
+            return;
+        }
+        
+        List<Enrollment> termEnrollments = enrollments.forTerm(term);
+        if (termEnrollments.isEmpty()) {
+            System.out.println("No enrollments found for " + term + ".");
+            return;
+        }
+        
+        System.out.println("\n--- " + term + " Grades" + (enrollments.isClosed(term) ? " (closed)" : "") + " ---");
+        System.out.println("Student ID\tCourse Code\tMarks\tGrade");
+        termEnrollments.forEach(e -> 
+            System.out.println(e.getStudentId() + "\t\t" + e.getCourseCode() + "\t\t" + 
+                             e.getMarks() + "\t" + e.getGrade())
+        );
+    }
+    
+    private void showEnrollmentsBetween() {
+        LocalDate from;
+        LocalDate to;
+        try {
+            System.out.print("Enter start date (YYYY-MM-DD): ");
+            from = LocalDate.parse(scanner.nextLine().trim());
+            System.out.print("Enter end date (YYYY-MM-DD): ");
+            to = LocalDate.parse(scanner.nextLine().trim());
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date!");
+            return;
+        }
+        
+        if (from.isAfter(to)) {
+            System.out.println("Start date must not be after end date!");
+            return;
+        }
+        
+        List<Enrollment> matches = enrollments.between(from, to);
+        if (matches.isEmpty()) {
+            System.out.println("No enrollments found between " + from + " and " + to + ".");
+            return;
+        }
+        
+        System.out.println("\n--- Enrollments from " + from + " to " + to + " ---");
+        matches.forEach(e -> 
+            System.out.println("Student: " + e.getStudentId() + 
+                             " | Course: " + e.getCourseCode() + 
+                             " | Term: " + e.getTerm() +
+                             " | Enrollment Date: " + e.getEnrollmentDate())
+        );
+    }
+    
+    private void exportChanges() {
+        System.out.print("Enter base version (blank for last export checkpoint " + lastExportVersion + "): ");
+        String input = scanner.nextLine().trim();
+        
+        long sinceVersion;
+        try {
+            sinceVersion = input.isEmpty() ? lastExportVersion : Long.parseLong(input);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid version!");
+            return;
+        }
+        
+        long currentVersion = RecordVersions.getInstance().currentVersion();
+        Path file = Paths.get(config.getDataPath(), "delta-" + sinceVersion + "-" + currentVersion + ".csv");
+        try {
+            Files.createDirectories(file.getParent());
+            try (BufferedWriter out = Files.newBufferedWriter(file)) {
+                lastExportVersion = new DeltaExporter(store).export(sinceVersion, out);
+            }
+        } catch (IOException e) {
+            System.out.println("Export failed: " + e.getMessage());
+            return;
+        }
+        
+        System.out.println("Changes exported to " + file);
+        System.out.println("Next checkpoint: " + lastExportVersion);
+    }
+    
     public static void main(String[] args) {
+        // java CampusCourseRecordsManager --compare-stores [students]
+        if (args.length > 0 && args[0].equals("--compare-stores")) {
+            try {
+                StoreWorkload.compare(args.length > 1 ? Integer.parseInt(args[1]) : 1000);
+            } catch (IOException e) {
+                System.out.println("Store comparison failed: " + e.getMessage());
+            }
+            return;
+        }
+        // java CampusCourseRecordsManager --compare-rendering [rows]
+        if (args.length > 0 && args[0].equals("--compare-rendering")) {
+            try {
+                RenderWorkload.compare(args.length > 1 ? Integer.parseInt(args[1]) : 100_000);
+            } catch (IOException e) {
+                System.out.println("Rendering comparison failed: " + e.getMessage());
+            }
+            return;
+        }
+        
         CampusCourseRecordsManager app = new CampusCourseRecordsManager();
         app.start();
     }